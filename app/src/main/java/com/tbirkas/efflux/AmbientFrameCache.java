@@ -0,0 +1,108 @@
+package com.tbirkas.efflux;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+
+/**
+ * Pre-rendered ambient frames, one per hour of the dial. A frame holds everything but the growing
+ * circle: the lit and black hour wedges, the separators, the border and the 15, 30 and 45 min
+ * circles, and is transparent where the circle shows through. In ambient mode the hours only
+ * change 12 times a day, so each minute only the circle has to be drawn under the frame.
+ *
+ * <p>Only the last {@link #MAX_CACHED_FRAMES} frames are kept; a new frame reuses the bitmap of
+ * the least recently used one, or borrows one from the {@link BitmapPool}.
+ */
+class AmbientFrameCache {
+
+    private static final int HOURS = 12;
+
+    /** Frames kept in memory, enough to get from one hour to the next without allocating. */
+    private static final int MAX_CACHED_FRAMES = 2;
+
+    private final BitmapPool mPool;
+
+    private final Bitmap[] mFrames = new Bitmap[HOURS];
+    private final long[] mLastUsed = new long[HOURS];
+    private long mUseCount;
+
+    AmbientFrameCache(BitmapPool pool) {
+        mPool = pool;
+    }
+
+    /**
+     * Returns the frame for the given hour, or null if it hasn't been rendered yet.
+     */
+    Bitmap get(int hour) {
+        Bitmap frame = mFrames[hour];
+        if (frame != null) {
+            mLastUsed[hour] = ++mUseCount;
+        }
+        return frame;
+    }
+
+    /**
+     * Makes room for the frame of the given hour and returns a cleared canvas to render it into.
+     */
+    Canvas put(int hour, int width, int height) {
+        Bitmap frame = mFrames[hour];
+        if (frame == null) {
+            frame = takeBitmap(width, height);
+            mFrames[hour] = frame;
+        }
+        frame.eraseColor(Color.TRANSPARENT);
+        mLastUsed[hour] = ++mUseCount;
+        return new Canvas(frame);
+    }
+
+    /**
+     * Returns the memory held by the cached frames in bytes.
+     */
+    long getByteCount() {
+        long bytes = 0;
+        for (Bitmap frame : mFrames) {
+            if (frame != null) {
+                bytes += frame.getByteCount();
+            }
+        }
+        return bytes;
+    }
+
+    void release() {
+        for (int i = 0; i < HOURS; ++i) {
+            if (mFrames[i] != null) {
+                mPool.put(mFrames[i]);
+                mFrames[i] = null;
+            }
+        }
+    }
+
+    /**
+     * Returns a bitmap for a new frame, taken from the least recently used frame when the cache
+     * is full.
+     */
+    private Bitmap takeBitmap(int width, int height) {
+        int cached = 0;
+        int oldest = -1;
+        for (int i = 0; i < HOURS; ++i) {
+            if (mFrames[i] != null) {
+                cached++;
+                if (oldest == -1 || mLastUsed[i] < mLastUsed[oldest]) {
+                    oldest = i;
+                }
+            }
+        }
+
+        if (cached < MAX_CACHED_FRAMES) {
+            return mPool.get(width, height, Bitmap.Config.ARGB_8888);
+        }
+
+        Bitmap frame = mFrames[oldest];
+        mFrames[oldest] = null;
+        if (frame.getWidth() != width || frame.getHeight() != height) {
+            mPool.put(frame);
+            frame = mPool.get(width, height, Bitmap.Config.ARGB_8888);
+        }
+        return frame;
+    }
+}
@@ -0,0 +1,94 @@
+package com.tbirkas.efflux;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+
+/**
+ * An interactive frame rendered ahead of time. After drawing a frame the render thread already
+ * knows what the next one will look like, as the dial only depends on the time, so it renders
+ * it here while it would otherwise sit idle. When the tick arrives and the frame still matches
+ * the state and the plan, drawing it is a single bitmap copy.
+ *
+ * <p>A frame is identified by the {@link FrameState} it was rendered with and the hour and the
+ * circle radius of its plan, everything else in an interactive frame follows from these. Its
+ * estimated lit pixel ratio is kept with it, to be recorded when the frame is shown.
+ */
+class BackBuffer {
+
+    private final BitmapPool mPool;
+
+    private Bitmap mBitmap;
+    private Canvas mCanvas;
+
+    // What the bitmap holds, mState is null if nothing
+    private FrameState mState;
+    private int mHour;
+    private float mCircleRadius;
+    private float mLitRatio;
+
+    // The state of the frame being rendered into the buffer
+    private FrameState mPendingState;
+
+    BackBuffer(BitmapPool pool) {
+        mPool = pool;
+    }
+
+    /**
+     * Returns whether the buffer holds the frame of the given state, hour and radius.
+     */
+    boolean matches(FrameState state, int hour, float circleRadius) {
+        return mState == state && mHour == hour && mCircleRadius == circleRadius;
+    }
+
+    /**
+     * Forgets the content of the buffer and returns a canvas to render the frame of the given
+     * state, hour and radius into. The bitmap is only replaced when the surface size changes.
+     * The frame isn't used before {@link #commit()}.
+     */
+    Canvas prepare(FrameState state, int hour, float circleRadius) {
+        if (mBitmap == null || mBitmap.getWidth() != state.width
+                || mBitmap.getHeight() != state.height) {
+            release();
+            mBitmap = mPool.get(state.width, state.height, Bitmap.Config.ARGB_8888);
+            mCanvas = new Canvas(mBitmap);
+        }
+        mState = null;
+        mPendingState = state;
+        mHour = hour;
+        mCircleRadius = circleRadius;
+        return mCanvas;
+    }
+
+    /**
+     * Makes the frame rendered into the canvas returned by the last
+     * {@link #prepare(FrameState, int, float)} available.
+     *
+     * @param litRatio the estimated lit pixel ratio of the frame
+     */
+    void commit(float litRatio) {
+        mState = mPendingState;
+        mPendingState = null;
+        mLitRatio = litRatio;
+    }
+
+    float getLitRatio() {
+        return mLitRatio;
+    }
+
+    Bitmap getBitmap() {
+        return mBitmap;
+    }
+
+    long getByteCount() {
+        return mBitmap != null ? mBitmap.getByteCount() : 0;
+    }
+
+    void release() {
+        if (mBitmap != null) {
+            mPool.put(mBitmap);
+            mBitmap = null;
+            mCanvas = null;
+        }
+        mState = null;
+    }
+}
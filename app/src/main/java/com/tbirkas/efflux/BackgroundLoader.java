@@ -0,0 +1,101 @@
+package com.tbirkas.efflux;
+
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+
+import com.tbirkas.efflux.dial.LitPixelEstimator;
+import com.tbirkas.efflux.face.BackgroundScale;
+
+/**
+ * Decodes the dial background straight to the width of the surface, see
+ * {@link BackgroundScale}, so no full size bitmap is ever held and nothing is rescaled afterwards.
+ * When the {@link BitmapPool} has a bitmap of the final size, the image is decoded into it.
+ *
+ * <p>For the surface sizes of common watches the build generates variants that are already
+ * scaled and cut to the surface, see {@code backgrounds.gradle}; those are decoded as they are.
+ */
+final class BackgroundLoader {
+
+    // Name of the generated variant of a surface size, followed by "<width>x<height>"
+    private static final String VARIANT_PREFIX = "background_";
+
+    private BackgroundLoader() {
+    }
+
+    /**
+     * Decodes the variant of the drawable generated for the surface size, or the drawable scaled
+     * to {@code width} if there is none.
+     *
+     * @see #load(Resources, int, int, Bitmap.Config, BitmapPool)
+     */
+    static Bitmap loadForSurface(Resources resources, int resId, int width, int height,
+                                 Bitmap.Config config, BitmapPool pool) {
+        int variantId = resources.getIdentifier(VARIANT_PREFIX + width + "x" + height,
+                "drawable", resources.getResourcePackageName(resId));
+        if (variantId == 0) {
+            return load(resources, resId, width, config, pool);
+        }
+
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeResource(resources, variantId, options);
+
+        options.inJustDecodeBounds = false;
+        options.inScaled = false;
+        options.inPreferredConfig = config;
+        options.inDither = config == Bitmap.Config.RGB_565;
+        options.inMutable = true;
+        return decode(resources, variantId, options, options.outWidth, options.outHeight, pool);
+    }
+
+    /**
+     * Decodes the drawable resource scaled to {@code width}, keeping its aspect ratio.
+     *
+     * @param config bitmap config to decode to, {@link Bitmap.Config#RGB_565} halves the memory
+     *               of an opaque background
+     */
+    static Bitmap load(Resources resources, int resId, int width, Bitmap.Config config,
+                       BitmapPool pool) {
+        BitmapFactory.Options options = BackgroundScale.forWidth(resources, resId, width);
+        options.inPreferredConfig = config;
+        options.inDither = config == Bitmap.Config.RGB_565;
+        options.inMutable = true;
+        return decode(resources, resId, options, width,
+                BackgroundScale.scaledHeight(options, width), pool);
+    }
+
+    /**
+     * Decodes the resource into a pooled bitmap of the given size if there is one.
+     */
+    private static Bitmap decode(Resources resources, int resId, BitmapFactory.Options options,
+                                 int width, int height, BitmapPool pool) {
+        options.inBitmap = pool.getForDecode(width, height, options.inPreferredConfig);
+        if (options.inBitmap != null) {
+            try {
+                return BitmapFactory.decodeResource(resources, resId, options);
+            } catch (IllegalArgumentException e) {
+                // The pooled bitmap can't hold the decoded image after all
+                pool.put(options.inBitmap);
+                options.inBitmap = null;
+            }
+        }
+        return BitmapFactory.decodeResource(resources, resId, options);
+    }
+
+    /**
+     * Returns the mean luminance of the bitmap, 0 to 1, sampled on a coarse grid.
+     */
+    static float meanLuma(Bitmap bitmap) {
+        final int samples = 16;
+        float sum = 0;
+        for (int row = 0; row < samples; ++row) {
+            int y = (2 * row + 1) * bitmap.getHeight() / (2 * samples);
+            for (int column = 0; column < samples; ++column) {
+                int x = (2 * column + 1) * bitmap.getWidth() / (2 * samples);
+                sum += LitPixelEstimator.luma(bitmap.getPixel(x, y));
+            }
+        }
+        return sum / (samples * samples);
+    }
+}
@@ -0,0 +1,60 @@
+package com.tbirkas.efflux;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.os.BatteryManager;
+
+import com.tbirkas.efflux.dial.ComplicationProvider;
+import com.tbirkas.efflux.dial.SlotData;
+
+/**
+ * The battery level of the watch, from the sticky battery broadcast. The system sends it on
+ * every change of voltage or temperature too, the slot only shows the changes of the level.
+ */
+class BatteryProvider implements ComplicationProvider {
+
+    private final Context mContext;
+    private Listener mListener;
+
+    private final BroadcastReceiver mReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            publish(intent);
+        }
+    };
+
+    BatteryProvider(Context context) {
+        mContext = context;
+    }
+
+    @Override
+    public void start(Listener listener) {
+        mListener = listener;
+        // Sticky, returns the current state right away
+        Intent battery = mContext.registerReceiver(mReceiver,
+                new IntentFilter(Intent.ACTION_BATTERY_CHANGED));
+        if (battery != null) {
+            publish(battery);
+        }
+    }
+
+    @Override
+    public void stop() {
+        if (mListener != null) {
+            mContext.unregisterReceiver(mReceiver);
+            mListener = null;
+        }
+    }
+
+    private void publish(Intent battery) {
+        int level = battery.getIntExtra(BatteryManager.EXTRA_LEVEL, -1);
+        int scale = battery.getIntExtra(BatteryManager.EXTRA_SCALE, -1);
+        if (level < 0 || scale <= 0 || mListener == null) {
+            return;
+        }
+        int percent = level * 100 / scale;
+        mListener.onData(new SlotData(percent + "%", percent / 100f));
+    }
+}
@@ -0,0 +1,109 @@
+package com.tbirkas.efflux;
+
+import android.graphics.Bitmap;
+
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Bitmaps no longer used by an engine, kept for the next engine or surface of the same size. The
+ * system creates and destroys engines often, e.g. for the preview in the watch face picker, and
+ * each one needs the same full-screen bitmaps; borrowing them from here avoids the large
+ * allocations and the GC pauses that come with them.
+ *
+ * <p>Bitmaps handed out are mutable, so they can be drawn into or decoded into with
+ * {@link android.graphics.BitmapFactory.Options#inBitmap}. The pool is shared by all engines of
+ * the service and is thread safe.
+ */
+class BitmapPool {
+
+    /** Memory the pool holds on to at most, the least recently returned bitmaps go first. */
+    private static final long MAX_POOL_BYTES = 6 * 1024 * 1024;
+
+    // Least recently returned first
+    private final List<Bitmap> mBitmaps = new ArrayList<>();
+    private long mBytes;
+
+    private long mHits;
+    private long mMisses;
+
+    /**
+     * Returns a bitmap of the given size and config, reused from the pool if possible. Its content
+     * is undefined.
+     */
+    synchronized Bitmap get(int width, int height, Bitmap.Config config) {
+        Bitmap bitmap = take(width, height, config);
+        if (bitmap != null) {
+            mHits++;
+            return bitmap;
+        }
+        mMisses++;
+        return Bitmap.createBitmap(width, height, config);
+    }
+
+    /**
+     * Returns a pooled bitmap of the given size and config to decode into, or null if there is
+     * none.
+     */
+    synchronized Bitmap getForDecode(int width, int height, Bitmap.Config config) {
+        Bitmap bitmap = take(width, height, config);
+        if (bitmap != null) {
+            mHits++;
+        } else {
+            mMisses++;
+        }
+        return bitmap;
+    }
+
+    /**
+     * Gives a bitmap back to the pool. The caller must not use it afterwards.
+     */
+    synchronized void put(Bitmap bitmap) {
+        if (bitmap == null || bitmap.isRecycled()) {
+            return;
+        }
+        if (!bitmap.isMutable() || bitmap.getByteCount() > MAX_POOL_BYTES) {
+            bitmap.recycle();
+            return;
+        }
+
+        mBitmaps.add(bitmap);
+        mBytes += bitmap.getByteCount();
+        while (mBytes > MAX_POOL_BYTES) {
+            Bitmap oldest = mBitmaps.remove(0);
+            mBytes -= oldest.getByteCount();
+            oldest.recycle();
+        }
+    }
+
+    /**
+     * Recycles every pooled bitmap.
+     */
+    synchronized void clear() {
+        for (Bitmap bitmap : mBitmaps) {
+            bitmap.recycle();
+        }
+        mBitmaps.clear();
+        mBytes = 0;
+    }
+
+    synchronized void dump(PrintWriter writer) {
+        writer.println("Bitmap pool: " + mBitmaps.size() + " bitmaps, " + mBytes / 1024 + " KiB, "
+                + mHits + " hits, " + mMisses + " misses");
+    }
+
+    private Bitmap take(int width, int height, Bitmap.Config config) {
+        // Most recently returned first, it's the most likely to still be in the CPU cache
+        for (int i = mBitmaps.size() - 1; i >= 0; --i) {
+            Bitmap bitmap = mBitmaps.get(i);
+            if (bitmap.getWidth() == width && bitmap.getHeight() == height
+                    && bitmap.getConfig() == config) {
+                mBitmaps.remove(i);
+                mBytes -= bitmap.getByteCount();
+                return bitmap;
+            }
+        }
+        return null;
+    }
+}
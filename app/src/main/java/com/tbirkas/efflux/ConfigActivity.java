@@ -1,7 +1,6 @@
 package com.tbirkas.efflux;
 
-import android.animation.AnimatorSet;
-import android.animation.ObjectAnimator;
+import android.animation.ValueAnimator;
 import android.app.Activity;
 import android.content.Context;
 import android.graphics.Color;
@@ -17,18 +16,13 @@ import android.view.WindowInsets;
 import android.widget.LinearLayout;
 import android.widget.TextView;
 
-import com.google.android.gms.common.ConnectionResult;
-import com.google.android.gms.common.api.GoogleApiClient;
 import com.google.android.gms.wearable.DataMap;
-import com.google.android.gms.wearable.PutDataMapRequest;
-import com.google.android.gms.wearable.PutDataRequest;
-import com.google.android.gms.wearable.Wearable;
+import com.tbirkas.efflux.face.Theme;
 
 
 public class ConfigActivity extends Activity implements
         WearableListView.ClickListener, WearableListView.OnScrollListener {
 
-    private GoogleApiClient mGoogleApiClient;
     private TextView mHeader;
 
     @Override
@@ -58,36 +52,7 @@ public class ConfigActivity extends Activity implements
         listView.setClickListener(this);
         listView.addOnScrollListener(this);
 
-        String[] colors = getResources().getStringArray(R.array.color_array);
-        String[] colornames = getResources().getStringArray(R.array.color_name_array);
-        listView.setAdapter(new ColorListAdapter(colors,colornames));
-
-        mGoogleApiClient = new GoogleApiClient.Builder(this)
-                .addConnectionCallbacks(new GoogleApiClient.ConnectionCallbacks() {
-                    @Override
-                    public void onConnected(Bundle connectionHint) {}
-                    @Override
-                    public void onConnectionSuspended(int cause) {} })
-                .addOnConnectionFailedListener(new GoogleApiClient.OnConnectionFailedListener() {
-                    @Override
-                    public void onConnectionFailed(ConnectionResult result) {} })
-                .addApi(Wearable.API)
-                .build();
-
-    }
-
-    @Override
-    protected void onStart() {
-        super.onStart();
-        mGoogleApiClient.connect();
-    }
-
-    @Override
-    protected void onStop() {
-        if (mGoogleApiClient != null && mGoogleApiClient.isConnected()) {
-            mGoogleApiClient.disconnect();
-        }
-        super.onStop();
+        listView.setAdapter(createAdapter());
     }
 
     @Override // WearableListView.ClickListener
@@ -96,12 +61,15 @@ public class ConfigActivity extends Activity implements
         sendParamsAndFinish(colorItemViewHolder.mColorItem.getColor());
     }
 
-    // Sends data through Google API
+    // Applies the config to the running face at once, and syncs it through Google API. Only the
+    // accent of the stored theme changes.
     private void sendParamsAndFinish(int backgroundColor) {
-        PutDataMapRequest putDataMapReq = PutDataMapRequest.create("/watch_face_config_efflux");
-        putDataMapReq.getDataMap().putInt("time_color", backgroundColor);
-        PutDataRequest putDataReq = putDataMapReq.asPutDataRequest();
-        Wearable.DataApi.putDataItem(mGoogleApiClient, putDataReq);
+        DataMap stored = new ConfigStore(this).load();
+        Theme theme = stored != null ? Theme.fromDataMap(stored, Theme.DEFAULT) : Theme.DEFAULT;
+        DataMap config = new DataMap();
+        theme.withAccentColor(backgroundColor).putTo(config);
+        LocalConfigBus.post(config);
+        ConfigSyncService.start(this, config);
         finish();
     }
 
@@ -129,43 +97,70 @@ public class ConfigActivity extends Activity implements
     }
 
 
-    private class ColorListAdapter extends WearableListView.Adapter {
-        private final String[] mColors;
-        private final String [] mColorNames;
+    /**
+     * Builds the adapter from the named palette followed by the hue ring. Every color is parsed
+     * and every label formatted here once, binding an item only looks them up.
+     */
+    private ColorListAdapter createAdapter() {
+        String[] paletteColors = getResources().getStringArray(R.array.color_array);
+        String[] paletteNames = getResources().getStringArray(R.array.color_name_array);
+        int hueSteps = getResources().getInteger(R.integer.hue_ring_steps);
+
+        int count = paletteColors.length + hueSteps;
+        int[] colors = new int[count];
+        String[] names = new String[count];
+        for (int i = 0; i < paletteColors.length; ++i) {
+            colors[i] = Color.parseColor(paletteColors[i]);
+            names[i] = paletteNames[i];
+        }
 
-        public ColorListAdapter(String[] colors,String[] colornames) {
-            mColorNames=colornames;
+        // Fully saturated hues around the color wheel
+        float[] hsv = {0, 1, 1};
+        for (int i = 0; i < hueSteps; ++i) {
+            int degrees = i * 360 / hueSteps;
+            hsv[0] = degrees;
+            colors[paletteColors.length + i] = Color.HSVToColor(hsv);
+            names[paletteColors.length + i] = getString(R.string.hue_ring_item, degrees);
+        }
+
+        return new ColorListAdapter(colors, names, getResources()
+                .getDimensionPixelSize(R.dimen.digital_config_color_picker_item_margin));
+    }
+
+    private static class ColorListAdapter extends WearableListView.Adapter {
+        private final int[] mColors;
+        private final String[] mColorNames;
+        private final int mEdgeMargin;
+
+        ColorListAdapter(int[] colors, String[] colorNames, int edgeMargin) {
             mColors = colors;
+            mColorNames = colorNames;
+            mEdgeMargin = edgeMargin;
         }
 
         @Override
         public ColorItemViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
-            return new ColorItemViewHolder(new ColorItem(parent.getContext()));
+            ColorItem colorItem = new ColorItem(parent.getContext());
+            // Each item keeps its layout params, binding only changes the margins
+            colorItem.setLayoutParams(new RecyclerView.LayoutParams(
+                    ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.WRAP_CONTENT));
+            return new ColorItemViewHolder(colorItem);
         }
 
         @Override
         public void onBindViewHolder(WearableListView.ViewHolder holder, int position) {
             ColorItemViewHolder colorItemViewHolder = (ColorItemViewHolder) holder;
+            colorItemViewHolder.mColorItem.setColor(mColorNames[position], mColors[position]);
 
-            String color = mColors[position];
-            String colorName = mColorNames[position];
-
-            colorItemViewHolder.mColorItem.setColor(colorName,color);
-
-            RecyclerView.LayoutParams layoutParams =
-                    new RecyclerView.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT,
-                            ViewGroup.LayoutParams.WRAP_CONTENT);
-            int colorPickerItemMargin = (int) getResources()
-                    .getDimension(R.dimen.digital_config_color_picker_item_margin);
             // Add margins to first and last item to make it possible for user to tap on them.
-            if (position == 0) {
-                layoutParams.setMargins(0, colorPickerItemMargin, 0, 0);
-            } else if (position == mColors.length - 1) {
-                layoutParams.setMargins(0, 0, 0, colorPickerItemMargin);
-            } else {
-                layoutParams.setMargins(0, 0, 0, 0);
+            int top = position == 0 ? mEdgeMargin : 0;
+            int bottom = position == mColors.length - 1 ? mEdgeMargin : 0;
+            ViewGroup.MarginLayoutParams layoutParams =
+                    (ViewGroup.MarginLayoutParams) holder.itemView.getLayoutParams();
+            if (layoutParams.topMargin != top || layoutParams.bottomMargin != bottom) {
+                layoutParams.setMargins(0, top, 0, bottom);
+                holder.itemView.setLayoutParams(layoutParams);
             }
-            colorItemViewHolder.itemView.setLayoutParams(layoutParams);
         }
 
         @Override
@@ -178,7 +173,7 @@ public class ConfigActivity extends Activity implements
      * The layout of a color item including image and label.
      */
     private static class ColorItem extends LinearLayout implements
-            WearableListView.OnCenterProximityListener {
+            WearableListView.OnCenterProximityListener, ValueAnimator.AnimatorUpdateListener {
         /**
          * The duration of the expand/shrink animation.
          */
@@ -197,13 +192,18 @@ public class ConfigActivity extends Activity implements
         private final float mExpandCircleRadius;
         private final float mShrinkCircleRadius;
 
-        private final ObjectAnimator mExpandCircleAnimator;
-        private final ObjectAnimator mExpandLabelAnimator;
-        private final AnimatorSet mExpandAnimator;
+        /*
+         * One animator drives both the circle and the label, from the current state to the
+         * expanded or shrunk one. Created on the first animated change and reused by every
+         * later one, as the item views are recycled.
+         */
+        private ValueAnimator mAnimator;
+        private float mFromCircleRadius;
+        private float mToCircleRadius;
+        private float mFromLabelAlpha;
+        private float mToLabelAlpha;
 
-        private final ObjectAnimator mShrinkCircleAnimator;
-        private final ObjectAnimator mShrinkLabelAnimator;
-        private final AnimatorSet mShrinkAnimator;
+        private int mColorValue;
 
         public ColorItem(Context context) {
             super(context);
@@ -214,61 +214,58 @@ public class ConfigActivity extends Activity implements
 
             mExpandCircleRadius = mColor.getCircleRadius();
             mShrinkCircleRadius = mExpandCircleRadius * SHRINK_CIRCLE_RATIO;
-
-            mShrinkCircleAnimator = ObjectAnimator.ofFloat(mColor, "circleRadius",
-                    mExpandCircleRadius, mShrinkCircleRadius);
-            mShrinkLabelAnimator = ObjectAnimator.ofFloat(mLabel, "alpha",
-                    EXPAND_LABEL_ALPHA, SHRINK_LABEL_ALPHA);
-            mShrinkAnimator = new AnimatorSet().setDuration(ANIMATION_DURATION_MS);
-            mShrinkAnimator.playTogether(mShrinkCircleAnimator, mShrinkLabelAnimator);
-
-            mExpandCircleAnimator = ObjectAnimator.ofFloat(mColor, "circleRadius",
-                    mShrinkCircleRadius, mExpandCircleRadius);
-            mExpandLabelAnimator = ObjectAnimator.ofFloat(mLabel, "alpha",
-                    SHRINK_LABEL_ALPHA, EXPAND_LABEL_ALPHA);
-            mExpandAnimator = new AnimatorSet().setDuration(ANIMATION_DURATION_MS);
-            mExpandAnimator.playTogether(mExpandCircleAnimator, mExpandLabelAnimator);
         }
 
         @Override
         public void onCenterPosition(boolean animate) {
-            if (animate) {
-                mShrinkAnimator.cancel();
-                if (!mExpandAnimator.isRunning()) {
-                    mExpandCircleAnimator.setFloatValues(mColor.getCircleRadius(), mExpandCircleRadius);
-                    mExpandLabelAnimator.setFloatValues(mLabel.getAlpha(), EXPAND_LABEL_ALPHA);
-                    mExpandAnimator.start();
-                }
-            } else {
-                mExpandAnimator.cancel();
-                mColor.setCircleRadius(mExpandCircleRadius);
-                mLabel.setAlpha(EXPAND_LABEL_ALPHA);
-            }
+            setState(mExpandCircleRadius, EXPAND_LABEL_ALPHA, animate);
         }
 
         @Override
         public void onNonCenterPosition(boolean animate) {
-            if (animate) {
-                mExpandAnimator.cancel();
-                if (!mShrinkAnimator.isRunning()) {
-                    mShrinkCircleAnimator.setFloatValues(mColor.getCircleRadius(), mShrinkCircleRadius);
-                    mShrinkLabelAnimator.setFloatValues(mLabel.getAlpha(), SHRINK_LABEL_ALPHA);
-                    mShrinkAnimator.start();
+            setState(mShrinkCircleRadius, SHRINK_LABEL_ALPHA, animate);
+        }
+
+        @Override // ValueAnimator.AnimatorUpdateListener
+        public void onAnimationUpdate(ValueAnimator animation) {
+            float fraction = animation.getAnimatedFraction();
+            mColor.setCircleRadius(mFromCircleRadius
+                    + (mToCircleRadius - mFromCircleRadius) * fraction);
+            mLabel.setAlpha(mFromLabelAlpha + (mToLabelAlpha - mFromLabelAlpha) * fraction);
+        }
+
+        private void setState(float circleRadius, float labelAlpha, boolean animate) {
+            if (!animate) {
+                if (mAnimator != null) {
+                    mAnimator.cancel();
                 }
-            } else {
-                mShrinkAnimator.cancel();
-                mColor.setCircleRadius(mShrinkCircleRadius);
-                mLabel.setAlpha(SHRINK_LABEL_ALPHA);
+                mColor.setCircleRadius(circleRadius);
+                mLabel.setAlpha(labelAlpha);
+                return;
+            }
+            if (mAnimator == null) {
+                mAnimator = ValueAnimator.ofFloat(0, 1).setDuration(ANIMATION_DURATION_MS);
+                mAnimator.addUpdateListener(this);
+            } else if (mAnimator.isRunning() && mToCircleRadius == circleRadius) {
+                // Already heading there
+                return;
             }
+            mAnimator.cancel();
+            mFromCircleRadius = mColor.getCircleRadius();
+            mToCircleRadius = circleRadius;
+            mFromLabelAlpha = mLabel.getAlpha();
+            mToLabelAlpha = labelAlpha;
+            mAnimator.start();
         }
 
-        private void setColor(String colorName,String color) {
+        private void setColor(String colorName, int color) {
+            mColorValue = color;
             mLabel.setText(colorName);
-            mColor.setCircleColor(Color.parseColor(color));
+            mColor.setCircleColor(color);
         }
 
         private int getColor() {
-            return mColor.getDefaultCircleColor();
+            return mColorValue;
         }
     }
 
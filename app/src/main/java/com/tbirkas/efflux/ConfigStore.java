@@ -0,0 +1,70 @@
+package com.tbirkas.efflux;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Base64;
+
+import com.google.android.gms.wearable.DataMap;
+
+/**
+ * Local copy of the watch face config DataMap, so the engine can apply the chosen theme in
+ * {@code onCreate} without waiting for the Google API client to connect and the data layer to
+ * answer. The DataApi stays the source of truth; whenever a config item arrives from it, it is
+ * written here too.
+ *
+ * <p>Configs arriving from the config apps may only carry the keys they change, e.g. the theme,
+ * so they are merged into the stored config rather than replacing it. The engines merge on the
+ * main thread and {@link ConfigSyncService} on its worker thread, each with a store of its own,
+ * so merges hold a lock shared by every store of the process.
+ */
+class ConfigStore {
+
+    private static final String PREFERENCES_NAME = "watch_face_config";
+    private static final String KEY_CONFIG = "config";
+
+    // Makes the load, put and save of a merge one step, the preferences are shared by the process
+    private static final Object MERGE_LOCK = new Object();
+
+    private final SharedPreferences mPreferences;
+
+    ConfigStore(Context context) {
+        mPreferences = context.getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE);
+    }
+
+    /**
+     * Returns the last saved config, or null if there is none.
+     */
+    DataMap load() {
+        String config = mPreferences.getString(KEY_CONFIG, null);
+        if (config == null) {
+            return null;
+        }
+        return DataMap.fromByteArray(Base64.decode(config, Base64.NO_WRAP));
+    }
+
+    /**
+     * Puts the keys of {@code changes} into the stored config, saves it and returns it. Merges
+     * are atomic, no other merge of the process sees the config in between.
+     */
+    DataMap merge(DataMap changes) {
+        synchronized (MERGE_LOCK) {
+            DataMap config = load();
+            if (config == null) {
+                config = new DataMap();
+            }
+            config.putAll(changes);
+            save(config);
+            return config;
+        }
+    }
+
+    /**
+     * Saves the config, the next load sees it right away and it is written to disk in the
+     * background.
+     */
+    private void save(DataMap config) {
+        mPreferences.edit()
+                .putString(KEY_CONFIG, Base64.encodeToString(config.toByteArray(), Base64.NO_WRAP))
+                .apply();
+    }
+}
@@ -0,0 +1,70 @@
+package com.tbirkas.efflux;
+
+import android.app.IntentService;
+import android.content.Context;
+import android.content.Intent;
+import android.util.Log;
+
+import com.google.android.gms.common.ConnectionResult;
+import com.google.android.gms.common.api.GoogleApiClient;
+import com.google.android.gms.wearable.DataApi;
+import com.google.android.gms.wearable.DataMap;
+import com.google.android.gms.wearable.PutDataMapRequest;
+import com.google.android.gms.wearable.Wearable;
+import com.tbirkas.efflux.face.Theme;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes a config picked on the watch to the config DataItem in the background, which persists
+ * it and syncs it to the phone. The config activity can finish right away, the running engines
+ * already got the config through {@link LocalConfigBus}.
+ *
+ * <p>The config picked only holds the keys it changes. The DataItem replaces the whole config,
+ * so it is written with the change merged into the {@link ConfigStore}.
+ */
+public class ConfigSyncService extends IntentService {
+
+    private static final String TAG = "ConfigSyncService";
+
+    private static final String EXTRA_CONFIG = "config";
+    private static final long CONNECT_TIMEOUT_S = 30;
+
+    public ConfigSyncService() {
+        super(TAG);
+    }
+
+    static void start(Context context, DataMap config) {
+        context.startService(new Intent(context, ConfigSyncService.class)
+                .putExtra(EXTRA_CONFIG, config.toByteArray()));
+    }
+
+    @Override
+    protected void onHandleIntent(Intent intent) {
+        byte[] config = intent.getByteArrayExtra(EXTRA_CONFIG);
+        if (config == null) {
+            return;
+        }
+
+        GoogleApiClient client = new GoogleApiClient.Builder(this)
+                .addApi(Wearable.API)
+                .build();
+        ConnectionResult result = client.blockingConnect(CONNECT_TIMEOUT_S, TimeUnit.SECONDS);
+        if (!result.isSuccess()) {
+            Log.w(TAG, "Config not synced, cannot connect: " + result);
+            return;
+        }
+        try {
+            PutDataMapRequest request = PutDataMapRequest.create(Theme.CONFIG_PATH);
+            DataMap merged = new ConfigStore(this).merge(DataMap.fromByteArray(config));
+            request.getDataMap().putAll(merged);
+            DataApi.DataItemResult put = Wearable.DataApi
+                    .putDataItem(client, request.asPutDataRequest()).await();
+            if (!put.getStatus().isSuccess()) {
+                Log.w(TAG, "Config not synced: " + put.getStatus());
+            }
+        } finally {
+            client.disconnect();
+        }
+    }
+}
@@ -4,21 +4,16 @@ import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
-import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
-import android.graphics.Canvas;
-import android.graphics.Color;
-import android.graphics.DashPathEffect;
-import android.graphics.Paint;
-import android.graphics.Path;
-import android.graphics.Point;
-import android.graphics.Rect;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+import android.net.Uri;
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.Message;
 import android.support.annotation.NonNull;
 import android.support.wearable.watchface.CanvasWatchFaceService;
 import android.support.wearable.watchface.WatchFaceStyle;
+import android.view.Choreographer;
 import android.view.Gravity;
 import android.view.SurfaceHolder;
 
@@ -32,9 +27,18 @@ import com.google.android.gms.wearable.DataItem;
 import com.google.android.gms.wearable.DataItemBuffer;
 import com.google.android.gms.wearable.DataMap;
 import com.google.android.gms.wearable.DataMapItem;
+import com.google.android.gms.wearable.PutDataRequest;
 import com.google.android.gms.wearable.Wearable;
-
-import java.util.Calendar;
+import com.tbirkas.efflux.dial.ComplicationSlots;
+import com.tbirkas.efflux.dial.FramePlanner;
+import com.tbirkas.efflux.dial.FrameRateGovernor;
+import com.tbirkas.efflux.face.PaintBundle;
+import com.tbirkas.efflux.face.Theme;
+
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.PrintWriter;
+import java.util.Arrays;
 import java.util.TimeZone;
 import java.util.concurrent.TimeUnit;
 
@@ -44,98 +48,148 @@ import java.util.concurrent.TimeUnit;
  */
 public class CustomWatchFaceService extends CanvasWatchFaceService {
 
+    // Shared by all engines, printed by dump()
+    private final RenderStats mStats = new RenderStats();
+
+    // The config DataItem of any node
+    private static final Uri CONFIG_URI = new Uri.Builder()
+            .scheme(PutDataRequest.WEAR_URI_SCHEME)
+            .authority("*")
+            .path(Theme.CONFIG_PATH)
+            .build();
+
+    // Config updates arriving within this time are drawn with one repaint
+    private static final long CONFIG_REPAINT_DELAY_MS = 100;
+
+    // Shortest time between two changes of the complication slots
+    private static final long BATTERY_REFRESH_MS = TimeUnit.MINUTES.toMillis(1);
+    private static final long STEPS_REFRESH_MS = TimeUnit.SECONDS.toMillis(15);
+
+    // Directory of the LayerDiskCache in the cache directory
+    private static final String LAYER_CACHE_DIR = "layers";
+
+    // Longest the main thread waits for a frame the system needs on screen before going on
+    private static final long FRAME_WAIT_TIMEOUT_MS = 200;
+
+    // Bitmaps engines are done with, for the next engine or surface change
+    private final BitmapPool mBitmapPool = new BitmapPool();
+
     /**
-     * Update rate in milliseconds for interactive mode. We update once a second to advance the
-     * second hand.
+     * Returns the version of the layers the app renders. Every install gets a new one, so layers
+     * cached by an older build are never drawn.
      */
-    private static final long INTERACTIVE_UPDATE_RATE_MS = TimeUnit.SECONDS.toMillis(1);
+    private String getAssetVersion() {
+        try {
+            PackageInfo info = getPackageManager().getPackageInfo(getPackageName(), 0);
+            return info.versionCode + "-" + info.lastUpdateTime;
+        } catch (PackageManager.NameNotFoundException e) {
+            // Can't happen for our own package
+            return String.valueOf(BuildConfig.VERSION_CODE);
+        }
+    }
 
     @Override
     public Engine onCreateEngine() {
         return new Engine();
     }
 
+    @Override
+    protected void dump(FileDescriptor fd, PrintWriter writer, String[] args) {
+        super.dump(fd, writer, args);
+        mStats.dump(writer);
+        mBitmapPool.dump(writer);
+    }
+
+    @Override
+    public void onDestroy() {
+        mBitmapPool.clear();
+        super.onDestroy();
+    }
+
     private class Engine extends CanvasWatchFaceService.Engine implements
             GoogleApiClient.ConnectionCallbacks,
             GoogleApiClient.OnConnectionFailedListener {
 
         private GoogleApiClient mGoogleApiClient;
+        private ConfigStore mConfigStore;
+
+        // Hash of the content of the last config DataItem applied
+        private int mConfigHash;
 
 
-        /* Handler to update the time once a second in interactive mode. */
+        /*
+         * Handler to update the time in interactive mode. It sleeps until the next visible change
+         * of the dial instead of waking up every second.
+         */
         private final Handler mUpdateTimeHandler = new Handler() {
             @Override
             // Handling the message from recursive call
             public void handleMessage(Message message) {
                 if (R.id.message_update == message.what) {
+                    mStats.onWakeup();
 
-                    // If the view is visible, onDraw() will be called at some point in the future.
-                    invalidate();
+                    // If the view is visible, a frame will be drawn at some point in the future.
+                    invalidate(RenderStats.SOURCE_TICK);
                     if (shouldTimerBeRunning()) {
-                        long timeMs = System.currentTimeMillis();
-                        long delayMs = INTERACTIVE_UPDATE_RATE_MS
-                                - (timeMs % INTERACTIVE_UPDATE_RATE_MS);
+                        long delayMs = computeNextTickDelayMs();
 
                         // Calling itself with delay (tick-tack)
                         mUpdateTimeHandler.sendEmptyMessageDelayed(R.id.message_update, delayMs);
                     }
+                } else if (R.id.message_config == message.what) {
+                    // A burst of config updates has settled
+                    invalidate(RenderStats.SOURCE_DATA_API);
                 }
             }
         };
 
 
+        /*
+         * Frame callback of the smooth sweep. It runs in sync with vsync at the rate picked by
+         * mGovernor, and replaces mUpdateTimeHandler while the sweep is on. Frames the render
+         * thread skips as unchanged let mGovernor lower the rate, and with it the wakeups.
+         */
+        private final Choreographer.FrameCallback mSweepFrameCallback =
+                new Choreographer.FrameCallback() {
+                    @Override
+                    public void doFrame(long frameTimeNanos) {
+                        if (!shouldSweepBeRunning()) {
+                            return;
+                        }
+                        mGovernor.onFrame(frameTimeNanos, mRenderThread.getLastDrawNs(),
+                                !mRenderThread.isLastFrameSkipped());
+                        invalidate(RenderStats.SOURCE_SWEEP);
+                        mChoreographer.postFrameCallbackDelayed(mSweepFrameCallback,
+                                mGovernor.getNextFrameDelayMs());
+                    }
+                };
+
+        private Choreographer mChoreographer;
+        private final FrameRateGovernor mGovernor = new FrameRateGovernor();
+
         private final BroadcastReceiver mTimeZoneReceiver = new BroadcastReceiver() {
             @Override
             public void onReceive(Context context, Intent intent) {
-                mCalendar.setTimeZone(TimeZone.getDefault());
-                invalidate();
+                updateTimeZone();
+                invalidate(RenderStats.SOURCE_TIME_ZONE);
             }
         };
 
         private boolean mRegisteredTimeZoneReceiver = false;
 
-        // Feel free to change these values and see what happens to the watch face.
-        private static final float STROKE_WIDTH = 2f;
-        private static final int SHADOW_RADIUS = 6;
-
         //private Time mTime;
 
-        private Paint newTimePaint;
-        private Paint newTimeAmbientPaint;
-        private Paint newTimeBgrPaint;
-        private Paint newTimeBgrAmbientPaint;
-        private Paint mBackgroundPaint;
-        private Paint mGrowingCirclePaint;
-        private Paint mGrayGrowingCirclePaint;
-        private Paint mQuarterPaint;
-        private Paint mHalfPaint;
-        private Paint mBlackBorder;
-
-        private boolean mAmbient;
-
-        private Bitmap mBackgroundBitmap;
-
-        private Point a;
-        private Point b;
-        private Point c;
-        private Path path;
+        // Draws the frames off the main thread, from the latest state published to it
+        private RenderThread mRenderThread;
 
-        private int mWidth;
-        private int mHeight;
+        // The inputs of the frames, replaced as a whole and published to mRenderThread
+        private FrameState mState = FrameState.INITIAL;
 
-        // Coordinates of the origin
-        private float mCenterX;
-        private float mCenterY;
-        private float mScale = 1;
+        // Works out when the dial changes next, for mUpdateTimeHandler
+        private final FramePlanner mPlanner = new FramePlanner();
 
-        // Custom color codes
-        private static final String GOLD = "#FFC90E";
-        private static final String GRAY = "#C7C7C7";
-
-        private boolean mLowBitAmbient;
-        private boolean mBurnInProtection;
-
-        private Calendar mCalendar;
+        // The data the providers push waits here for the next frame
+        private final ComplicationSlots mComplications = new ComplicationSlots();
 
         @Override
         public void onCreate(SurfaceHolder holder) {
@@ -149,89 +203,29 @@ public class CustomWatchFaceService extends CanvasWatchFaceService {
                     .setViewProtectionMode(WatchFaceStyle.PROTECT_STATUS_BAR)
                     .build());
 
+            LayerDiskCache diskCache = new LayerDiskCache(new File(getCacheDir(), LAYER_CACHE_DIR),
+                    getAssetVersion());
+            mRenderThread = new RenderThread(holder, getResources(), mStats, mBitmapPool,
+                    diskCache);
 
-            // Setting the background colour
-            mBackgroundPaint = new Paint();
-            mBackgroundPaint.setColor(Color.BLACK);
-            mBackgroundPaint.setAntiAlias(true);
-            mBackgroundPaint.setFilterBitmap(true);
-
-
-            // New gold (default) time
-            newTimePaint = new Paint();
-            newTimePaint.setStrokeWidth(0);
-            newTimePaint.setColor(Color.parseColor(GOLD));
-            newTimePaint.setStyle(Paint.Style.FILL_AND_STROKE);
-            newTimePaint.setAntiAlias(true);
-
-            // New gray time
-            newTimeAmbientPaint = new Paint();
-            newTimeAmbientPaint.setStrokeWidth(0);
-            newTimeAmbientPaint.setColor(Color.parseColor(GRAY));
-            newTimeAmbientPaint.setStyle(Paint.Style.FILL_AND_STROKE);
-            newTimeAmbientPaint.setAntiAlias(false);
-
-
-            // New BLACK MIDs
-            newTimeBgrPaint = new Paint();
-            newTimeBgrPaint.setStrokeWidth(0);
-            newTimeBgrPaint.setColor(Color.BLACK);
-            newTimeBgrPaint.setStyle(Paint.Style.FILL_AND_STROKE);
-            newTimeBgrPaint.setAntiAlias(true);
-
-            newTimeBgrAmbientPaint = new Paint();
-            newTimeBgrAmbientPaint.setStrokeWidth(0);
-            newTimeBgrAmbientPaint.setColor(Color.BLACK);
-            newTimeBgrAmbientPaint.setStyle(Paint.Style.FILL_AND_STROKE);
-            newTimeBgrAmbientPaint.setAntiAlias(false);
-
-            // Decoding the png images to bitmap object
-            mBackgroundBitmap = BitmapFactory.decodeResource(getResources(), R.drawable.custom_background);
-
-            // Properties of the growing filled circle
-            mGrowingCirclePaint = new Paint();
-            mGrowingCirclePaint.setColor(Color.parseColor(GOLD)); // Gold = default
-            mGrowingCirclePaint.setStrokeWidth(0);
-            mGrowingCirclePaint.setAntiAlias(true);
-            mGrowingCirclePaint.setStrokeCap(Paint.Cap.ROUND);
-            mGrowingCirclePaint.setStyle(Paint.Style.FILL_AND_STROKE);
-
-            // Ambient background circle
-            mGrayGrowingCirclePaint = new Paint();
-            mGrayGrowingCirclePaint.setColor(Color.parseColor(GRAY));
-            mGrayGrowingCirclePaint.setStrokeWidth(0);
-            mGrayGrowingCirclePaint.setAntiAlias(false);
-            mGrayGrowingCirclePaint.setStrokeCap(Paint.Cap.ROUND);
-            mGrayGrowingCirclePaint.setStyle(Paint.Style.FILL_AND_STROKE);
-
-            // Border for square watches
-            mBlackBorder = new Paint();
-            mBlackBorder.setColor(Color.BLACK);
-            mBlackBorder.setStrokeWidth(2);
-            mBlackBorder.setAntiAlias(false);
-            mBlackBorder.setStrokeCap(Paint.Cap.ROUND);
-            mBlackBorder.setStyle(Paint.Style.STROKE);
-
-            // Properties of the dashed 15 and 45 min circles
-            mQuarterPaint = new Paint();
-            mQuarterPaint.setColor(Color.WHITE);
-            mQuarterPaint.setStrokeWidth(STROKE_WIDTH);
-            mQuarterPaint.setAntiAlias(true);
-            mQuarterPaint.setStrokeCap(Paint.Cap.ROUND);
-            mQuarterPaint.setShadowLayer(SHADOW_RADIUS, 0, 0, Color.BLACK);
-            mQuarterPaint.setStyle(Paint.Style.STROKE);
-            mQuarterPaint.setPathEffect(new DashPathEffect(new float[]{10, 10}, 4));
-
-            // Properties of the 30 min circle
-            mHalfPaint = new Paint();
-            mHalfPaint.setColor(Color.WHITE);
-            mHalfPaint.setStrokeWidth(STROKE_WIDTH);
-            mHalfPaint.setAntiAlias(true);
-            mHalfPaint.setStrokeCap(Paint.Cap.ROUND);
-            mHalfPaint.setShadowLayer(SHADOW_RADIUS, 0, 0, Color.BLACK);
-            mHalfPaint.setStyle(Paint.Style.STROKE);
-
-            mCalendar = Calendar.getInstance();
+            // Gold (default) theme until the config is applied
+            publish(mState.withPaints(PaintBundle.compile(Theme.DEFAULT)));
+
+            mChoreographer = Choreographer.getInstance();
+
+            // Apply the last known config, so the first frame is drawn with the right theme
+            mConfigStore = new ConfigStore(CustomWatchFaceService.this);
+            DataMap config = mConfigStore.load();
+            if (config != null) {
+                applyConfig(config);
+            }
+            LocalConfigBus.register(mLocalConfigListener);
+
+            // Left and right of the dial, started once visible
+            mComplications.addSlot(new BatteryProvider(CustomWatchFaceService.this),
+                    BATTERY_REFRESH_MS);
+            mComplications.addSlot(new StepCountProvider(CustomWatchFaceService.this),
+                    STEPS_REFRESH_MS);
 
             // Initalizing and starting Google API
             mGoogleApiClient = new GoogleApiClient.Builder(CustomWatchFaceService.this)
@@ -246,6 +240,11 @@ public class CustomWatchFaceService extends CanvasWatchFaceService {
         @Override
         public void onDestroy() {
             mUpdateTimeHandler.removeMessages(R.id.message_update);
+            mUpdateTimeHandler.removeMessages(R.id.message_config);
+            LocalConfigBus.unregister(mLocalConfigListener);
+            mComplications.stop();
+            stopSweep();
+            mRenderThread.quit();
             releaseGoogleApiClient();
             super.onDestroy();
         }
@@ -254,16 +253,20 @@ public class CustomWatchFaceService extends CanvasWatchFaceService {
         @Override
         public void onTimeTick() {
             super.onTimeTick();
-            invalidate();
-
+            invalidate(RenderStats.SOURCE_TIME_TICK);
         }
 
         @Override
         public void onAmbientModeChanged(boolean inAmbientMode) {
             super.onAmbientModeChanged(inAmbientMode);
-            if (mAmbient != inAmbientMode) {
-                mAmbient = inAmbientMode;
-                invalidate();
+            if (mState.ambient != inAmbientMode) {
+                publish(mState.withAmbient(inAmbientMode));
+                if (inAmbientMode) {
+                    // The system may put the screen to sleep right after this returns
+                    drawAndWait(RenderStats.SOURCE_MODE_CHANGE, false);
+                } else {
+                    invalidate(RenderStats.SOURCE_MODE_CHANGE);
+                }
             }
 
             /*
@@ -275,122 +278,43 @@ public class CustomWatchFaceService extends CanvasWatchFaceService {
 
         @Override
         public void onSurfaceChanged(SurfaceHolder holder, int format, int width, int height) {
+            mRenderThread.setSurfaceValid(true);
+            publish(mState.withSurface(width, height));
+            mPlanner.setSurfaceSize(width, height);
             super.onSurfaceChanged(holder, format, width, height);
-            mWidth = width;
-            mHeight = height;
-            /*
-             * Find the coordinates of the center point on the screen.
-             * Ignore the window insets so that, on round watches
-             * with a "chin", the watch face is centered on the entire screen,
-             * not just the usable portion.
-             */
-            mCenterX = mWidth / 2f;
-            mCenterY = mHeight / 2f;
-            mScale = ((float) width) / (float) mBackgroundBitmap.getWidth();
-
-            // setting the Path
-
-            a = new Point((int) mCenterX, (int) mCenterY);
-            b = new Point((mWidth / 2) - (mWidth / 12), mHeight);
-            c = new Point((mWidth / 2) + (mWidth / 12), mHeight);
-
-            path = new Path();
-            path.setFillType(Path.FillType.EVEN_ODD);
-            path.moveTo((int) mCenterX, (int) mCenterY);
-            path.lineTo(a.x, a.y);
-            path.lineTo(b.x, b.y);
-            path.lineTo(c.x, c.y);
-            path.close();
-
-
-            // Scaling the images
-            mBackgroundBitmap = Bitmap.createScaledBitmap(mBackgroundBitmap,
-                    (int) (mBackgroundBitmap.getWidth() * mScale),
-                    (int) (mBackgroundBitmap.getHeight() * mScale), true);
-
         }
 
-
         @Override
-        public void onDraw(Canvas canvas, Rect bounds) {
-            //mTime.setToNow();
-            mCalendar.setTimeInMillis(System.currentTimeMillis());
-
-            // Draw the background.
-            canvas.drawBitmap(mBackgroundBitmap, 0, 0, mBackgroundPaint);
-
-
-            // Milliseconds drawing,  mWidth / 2 = Radius, the rest is converting the seconds in a 0-1 interval
-            if (mAmbient || (mLowBitAmbient || mBurnInProtection)) {
-                canvas.drawCircle(mCenterX, mCenterY, (float) (((mWidth) / 2) * ((((mCalendar.get(Calendar.MINUTE) * (60)) + mCalendar.get(Calendar.SECOND)) * 0.027777778) / 100)), mGrayGrowingCirclePaint);
-            } else {
-                canvas.drawCircle(mCenterX, mCenterY, (float) (((mWidth) / 2) * ((((mCalendar.get(Calendar.MINUTE) * (60)) + mCalendar.get(Calendar.SECOND)) * 0.027777778) / 100)), mGrowingCirclePaint);
-            }
-
-
-            // Drawing the hour lines
-            for (int i = 1; i <= (mCalendar.get(Calendar.HOUR) % 12); ++i) {
-                canvas.save();
-                // A hour is 30 degree, i+6 is because it starts at 6, 23 is the shift because it doesn't start at the middle
-                canvas.rotate(((30) * (i + 6)), mCenterX, mCenterY);
-
-                // Ambient mode real deal
-                if (mAmbient || mLowBitAmbient) {
-                    canvas.drawPath(path, newTimeAmbientPaint);
-                } else {
-                    canvas.drawPath(path, newTimePaint);
-                }
-
-                canvas.restore();
-
-            }
-
-            // Drawing black lines between hours
-            for (int i = 1; i <= 12; ++i) { // Was hour%12 originally
-                canvas.save();
-                // A hour is 30 degree, i+6 is because it starts at 6, 23 is the shift because it doesn't start at the middle
-                canvas.rotate(((30) * (i + 6)) + 15, mCenterX, mCenterY);
-
-                // Ambient mode real deal
-                if (mAmbient || mLowBitAmbient) {
-                    canvas.drawPath(path, newTimeBgrAmbientPaint);
-                } else {
-                    canvas.drawPath(path, newTimeBgrPaint);
-                }
-
-                canvas.restore();
-
-            }
-
-            // Drawing the leftover black part after the current hour
-            for (int i = 1; i <= ((11 - (mCalendar.get(Calendar.HOUR) % 12))); ++i) {
-                canvas.save();
-
-                canvas.rotate(((30) * ((mCalendar.get(Calendar.HOUR) % 12) + (i + 7))), mCenterX, mCenterY);
+        public void onSurfaceRedrawNeeded(SurfaceHolder holder) {
+            // The frame has to be on screen when this returns, don't let the super class draw it.
+            // The surface may have lost the frame drawn last, so it's drawn even if unchanged.
+            drawAndWait(RenderStats.SOURCE_SYSTEM, true);
+        }
 
-                canvas.drawPath(path, newTimeBgrPaint);
-                canvas.restore();
+        @Override
+        public void onSurfaceDestroyed(SurfaceHolder holder) {
+            // Waits for a frame being drawn into the surface
+            mRenderThread.setSurfaceValid(false);
+            super.onSurfaceDestroyed(holder);
+        }
 
+        /**
+         * Frames are drawn by {@link #mRenderThread}, including the ones the super class asks
+         * for.
+         */
+        @Override
+        public void invalidate() {
+            if (mRenderThread != null) {
+                invalidate(RenderStats.SOURCE_SYSTEM);
             }
-
-            // Drawing the black border for square screens
-            canvas.drawCircle(mCenterX, mCenterY, (mWidth / 2) + 2, mBlackBorder);
-
-            // Draw the dashed circles
-            canvas.save();
-            canvas.rotate(-3, mCenterX, mCenterY);
-            canvas.drawCircle(mCenterX, mCenterY, ((mWidth) / 4), mHalfPaint);
-            canvas.drawCircle(mCenterX, mCenterY, ((mWidth) / 8), mQuarterPaint);
-            canvas.rotate(8, mCenterX, mCenterY);
-            canvas.drawCircle(mCenterX, mCenterY, ((mWidth) / 8 + mWidth / 4), mQuarterPaint);
-            canvas.restore();
         }
 
         @Override
         public void onPropertiesChanged(Bundle properties) {
             super.onPropertiesChanged(properties);
-            mLowBitAmbient = properties.getBoolean(PROPERTY_LOW_BIT_AMBIENT, false);
-            mBurnInProtection = properties.getBoolean(PROPERTY_BURN_IN_PROTECTION, false);
+            publish(mState.withDeviceProperties(
+                    properties.getBoolean(PROPERTY_LOW_BIT_AMBIENT, false),
+                    properties.getBoolean(PROPERTY_BURN_IN_PROTECTION, false)));
         }
 
         @Override
@@ -401,10 +325,12 @@ public class CustomWatchFaceService extends CanvasWatchFaceService {
                 registerReceiver();
 
                 // Update time zone in case it changed while we weren't visible.
-                mCalendar.setTimeZone(TimeZone.getDefault());
+                updateTimeZone();
 
+                mComplications.start();
             } else {
                 unregisterReceiver();
+                mComplications.stop();
             }
 
             /*
@@ -435,11 +361,25 @@ public class CustomWatchFaceService extends CanvasWatchFaceService {
 
         private void updateTimer() {
             mUpdateTimeHandler.removeMessages(R.id.message_update);
-            if (shouldTimerBeRunning()) {
+            stopSweep();
+            if (shouldSweepBeRunning()) {
+                startSweep();
+            } else if (shouldTimerBeRunning()) {
                 mUpdateTimeHandler.sendEmptyMessage(R.id.message_update);
             }
         }
 
+        private void startSweep() {
+            mPlanner.setSmoothSweep(true);
+            mChoreographer.postFrameCallback(mSweepFrameCallback);
+        }
+
+        private void stopSweep() {
+            mChoreographer.removeFrameCallback(mSweepFrameCallback);
+            mPlanner.setSmoothSweep(false);
+            mGovernor.reset();
+        }
+
         // Google Api stuff
         private void releaseGoogleApiClient() {
             if (mGoogleApiClient != null && mGoogleApiClient.isConnected()) {
@@ -451,9 +391,10 @@ public class CustomWatchFaceService extends CanvasWatchFaceService {
 
         @Override
         public void onConnected(Bundle bundle) {
+            // Only the config item is of interest, don't fetch or listen to anything else
             Wearable.DataApi.addListener(mGoogleApiClient,
-                    onDataChangedListener);
-            Wearable.DataApi.getDataItems(mGoogleApiClient).
+                    onDataChangedListener, CONFIG_URI, DataApi.FILTER_LITERAL);
+            Wearable.DataApi.getDataItems(mGoogleApiClient, CONFIG_URI, DataApi.FILTER_LITERAL).
                     setResultCallback(onConnectedResultCallback);
         }
 
@@ -462,32 +403,92 @@ public class CustomWatchFaceService extends CanvasWatchFaceService {
         }
 
 
-        private void updateParamsForDataItem(DataItem item) {
-            if ((item.getUri().getPath()).equals("/watch_face_config_efflux")) {
-                DataMap dataMap = DataMapItem.fromDataItem(item).getDataMap();
-                if (dataMap.containsKey("time_color")) {
-                    int tc = dataMap.getInt("time_color");
-                    newTimePaint.setColor(tc);
-                    mGrowingCirclePaint.setColor(tc);
-                    invalidate();
+        /**
+         * Applies the config DataItem unless its content is the same as last time, and returns
+         * whether the face has to be redrawn.
+         */
+        private boolean updateParamsForDataItem(DataItem item) {
+            if (!Theme.CONFIG_PATH.equals(item.getUri().getPath())) {
+                return false;
+            }
+
+            int hash = Arrays.hashCode(item.getData());
+            if (hash == mConfigHash) {
+                return false;
+            }
+            mConfigHash = hash;
+
+            // The item may come from a config app that only wrote the keys it knows
+            DataMap dataMap = DataMapItem.fromDataItem(item).getDataMap();
+            return applyConfig(mConfigStore.merge(dataMap));
+        }
+
+        /**
+         * Schedules one repaint for all the config updates arriving shortly after each other.
+         */
+        private void scheduleConfigRepaint() {
+            mUpdateTimeHandler.removeMessages(R.id.message_config);
+            mUpdateTimeHandler.sendEmptyMessageDelayed(R.id.message_config,
+                    CONFIG_REPAINT_DELAY_MS);
+        }
+
+        /**
+         * Applies the config DataMap and returns whether anything changed.
+         */
+        private boolean applyConfig(DataMap dataMap) {
+            boolean changed = false;
+            Theme theme = Theme.fromDataMap(dataMap, mState.paints.theme);
+            if (!theme.equals(mState.paints.theme)) {
+                // Compiled up front and swapped in one go, the frames only ever see whole themes
+                publish(mState.withPaints(PaintBundle.compile(theme)));
+                changed = true;
+            }
+            if (dataMap.containsKey(Theme.KEY_LIT_BUDGET)) {
+                float litBudget = dataMap.getFloat(Theme.KEY_LIT_BUDGET);
+                if (litBudget != mState.litBudget) {
+                    publish(mState.withLitBudget(litBudget));
+                    changed = true;
+                }
+            }
+            if (dataMap.containsKey(Theme.KEY_SMOOTH_SWEEP)) {
+                boolean smoothSweep = dataMap.getBoolean(Theme.KEY_SMOOTH_SWEEP);
+                if (smoothSweep != mState.smoothSweep) {
+                    publish(mState.withSmoothSweep(smoothSweep));
+                    updateTimer();
+                    changed = true;
                 }
             }
+            return changed;
         }
 
+        /*
+         * Configs picked on the watch, applied and drawn right away. The same config arrives
+         * again from the data layer a little later, and changes nothing then.
+         */
+        private final LocalConfigBus.Listener mLocalConfigListener = new LocalConfigBus.Listener() {
+            @Override
+            public void onLocalConfig(DataMap config) {
+                if (applyConfig(mConfigStore.merge(config))) {
+                    invalidate(RenderStats.SOURCE_LOCAL_CONFIG);
+                }
+            }
+        };
+
         private final DataApi.DataListener onDataChangedListener =
                 new DataApi.DataListener() {
                     @Override
                     public void onDataChanged(DataEventBuffer dataEvents) {
+                        boolean changed = false;
                         for (DataEvent event : dataEvents) {
                             if (event.getType() == DataEvent.TYPE_CHANGED) {
                                 DataItem item = event.getDataItem();
-                                updateParamsForDataItem(item);
+                                changed |= updateParamsForDataItem(item);
                             }
                         }
 
                         dataEvents.release();
-                        if (isVisible() && !isInAmbientMode()) {
-                            invalidate();
+                        if (changed) {
+                            scheduleConfigRepaint();
                         }
                     }
                 };
@@ -497,24 +498,87 @@ public class CustomWatchFaceService extends CanvasWatchFaceService {
                 new ResultCallback<DataItemBuffer>() {
                     @Override
                     public void onResult(DataItemBuffer dataItems) {
+                        // Only reconciles with the stored config, redraws if anything changed
+                        boolean changed = false;
                         for (DataItem item : dataItems) {
-                            updateParamsForDataItem(item);
+                            changed |= updateParamsForDataItem(item);
                         }
 
                         dataItems.release();
-                        if (isVisible() && !isInAmbientMode()) {
-                            invalidate();
+                        if (changed) {
+                            scheduleConfigRepaint();
                         }
-
                     }
                 };
 
+        /**
+         * Returns the delay until the next whole-pixel step of the growing circle or the next
+         * hour, whichever comes first.
+         */
+        private long computeNextTickDelayMs() {
+            return mPlanner.nextChangeDelayMs(System.currentTimeMillis());
+        }
+
+        private void invalidate(int source) {
+            mStats.onInvalidate(source);
+            applyComplications();
+            mRenderThread.requestFrame();
+        }
+
+        /**
+         * Shows the complication data pushed since the last frame, as far as the refresh
+         * intervals of the slots allow. Providers never request frames themselves, their data is
+         * drawn with the frames the dial needs anyway.
+         */
+        private void applyComplications() {
+            if (mComplications.applyPending(System.currentTimeMillis())) {
+                publish(mState.withComplications(mComplications.getShown()));
+            }
+        }
+
+        /**
+         * Draws a frame before returning, for the system callbacks that only keep the CPU awake
+         * or the surface shown until they return. Waits for at most
+         * {@link #FRAME_WAIT_TIMEOUT_MS}, so it is kept to entering ambient mode and redrawing the
+         * surface; the ambient minute ticks are drawn like any other invalidation.
+         *
+         * @param force whether to draw the frame even if it looks the same as the one on screen
+         */
+        private void drawAndWait(int source, boolean force) {
+            mStats.onInvalidate(source);
+            applyComplications();
+            mRenderThread.drawAndWait(FRAME_WAIT_TIMEOUT_MS, force);
+        }
+
+        /**
+         * Makes the state the current one and hands it to {@link #mRenderThread}. Only called on
+         * the main thread.
+         */
+        private void publish(FrameState state) {
+            mState = state;
+            mRenderThread.publish(state);
+        }
+
+        private void updateTimeZone() {
+            TimeZone timeZone = TimeZone.getDefault();
+            mPlanner.setTimeZone(timeZone);
+            publish(mState.withTimeZone(timeZone));
+        }
+
         /**
          * Returns whether the {@link #mUpdateTimeHandler} timer should be running. The timer
-         * should only run when we're visible and in interactive mode.
+         * should only run when we're visible and in interactive mode, and the smooth sweep is off.
          */
         private boolean shouldTimerBeRunning() {
-            return isVisible() && !isInAmbientMode();
+            return isVisible() && !isInAmbientMode() && !mState.smoothSweep;
+        }
+
+        /**
+         * Returns whether the smooth sweep should be running. Like the timer it only runs when
+         * we're visible and in interactive mode.
+         */
+        private boolean shouldSweepBeRunning() {
+            return isVisible() && !isInAmbientMode() && mState.smoothSweep;
         }
 
         @Override
@@ -0,0 +1,115 @@
+package com.tbirkas.efflux;
+
+import com.tbirkas.efflux.dial.FramePlan;
+import com.tbirkas.efflux.dial.SlotData;
+import com.tbirkas.efflux.face.PaintBundle;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.TimeZone;
+
+/**
+ * Everything but the time that a frame of an engine depends on: the surface, the mode, the
+ * device properties, the config and the complication data. States are immutable; the engine
+ * derives a new one with the {@code with...} methods whenever an input changes and publishes it
+ * to its {@link RenderThread}, which draws the latest state it has seen. The time is read when
+ * drawing, so a frame never shows a stale time.
+ *
+ * <p>The time zone is never changed after it is put in a state.
+ */
+final class FrameState {
+
+    static final FrameState INITIAL = new FrameState(0, 0, false, false, false,
+            null, TimeZone.getDefault(), 1, false, Collections.<SlotData>emptyList());
+
+    /** Size of the surface, 0 until it has been created. */
+    final int width;
+    final int height;
+
+    final boolean ambient;
+    final boolean lowBitAmbient;
+    final boolean burnInProtection;
+
+    /** Compiled from the current theme, replaced as a whole when the theme changes. */
+    final PaintBundle paints;
+
+    final TimeZone timeZone;
+
+    /** Highest lit pixel ratio of a frame, 1 for no limit. */
+    final float litBudget;
+
+    /** Whether the circle grows continuously instead of once a second. */
+    final boolean smoothSweep;
+
+    /** The data shown by the complication slots, immutable. */
+    final List<SlotData> complications;
+
+    private FrameState(int width, int height, boolean ambient, boolean lowBitAmbient,
+                       boolean burnInProtection, PaintBundle paints, TimeZone timeZone,
+                       float litBudget, boolean smoothSweep, List<SlotData> complications) {
+        this.width = width;
+        this.height = height;
+        this.ambient = ambient;
+        this.lowBitAmbient = lowBitAmbient;
+        this.burnInProtection = burnInProtection;
+        this.paints = paints;
+        this.timeZone = timeZone;
+        this.litBudget = litBudget;
+        this.smoothSweep = smoothSweep;
+        this.complications = complications;
+    }
+
+    FrameState withSurface(int width, int height) {
+        return new FrameState(width, height, ambient, lowBitAmbient, burnInProtection, paints,
+                timeZone, litBudget, smoothSweep, complications);
+    }
+
+    FrameState withAmbient(boolean ambient) {
+        return new FrameState(width, height, ambient, lowBitAmbient, burnInProtection, paints,
+                timeZone, litBudget, smoothSweep, complications);
+    }
+
+    FrameState withDeviceProperties(boolean lowBitAmbient, boolean burnInProtection) {
+        return new FrameState(width, height, ambient, lowBitAmbient, burnInProtection, paints,
+                timeZone, litBudget, smoothSweep, complications);
+    }
+
+    FrameState withPaints(PaintBundle paints) {
+        return new FrameState(width, height, ambient, lowBitAmbient, burnInProtection, paints,
+                timeZone, litBudget, smoothSweep, complications);
+    }
+
+    FrameState withTimeZone(TimeZone timeZone) {
+        return new FrameState(width, height, ambient, lowBitAmbient, burnInProtection, paints,
+                timeZone, litBudget, smoothSweep, complications);
+    }
+
+    FrameState withLitBudget(float litBudget) {
+        return new FrameState(width, height, ambient, lowBitAmbient, burnInProtection, paints,
+                timeZone, litBudget, smoothSweep, complications);
+    }
+
+    FrameState withSmoothSweep(boolean smoothSweep) {
+        return new FrameState(width, height, ambient, lowBitAmbient, burnInProtection, paints,
+                timeZone, litBudget, smoothSweep, complications);
+    }
+
+    FrameState withComplications(List<SlotData> complications) {
+        return new FrameState(width, height, ambient, lowBitAmbient, burnInProtection, paints,
+                timeZone, litBudget, smoothSweep, complications);
+    }
+
+    boolean hasSurface() {
+        return width > 0 && height > 0;
+    }
+
+    /**
+     * Returns the {@link FramePlan} mode frames of this state are drawn in.
+     */
+    int getMode() {
+        if (!ambient) {
+            return FramePlan.MODE_INTERACTIVE;
+        }
+        return lowBitAmbient ? FramePlan.MODE_LOW_BIT_AMBIENT : FramePlan.MODE_AMBIENT;
+    }
+}
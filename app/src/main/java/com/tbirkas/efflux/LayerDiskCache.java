@@ -0,0 +1,259 @@
+package com.tbirkas.efflux;
+
+import android.graphics.Bitmap;
+import android.os.Process;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rendered layers kept on disk as raw pixels, so a restarted process draws its first frame
+ * without decoding the background or rendering the static layer again. Each file starts with a
+ * small header holding the bitmap size and config and the full key of the layer, followed by the
+ * pixels exactly as {@link Bitmap#copyPixelsToBuffer} writes them. Reading maps the file and
+ * copies the pixels into a pooled bitmap in one go.
+ *
+ * <p>The key of a layer describes everything its pixels depend on, e.g. the surface size and
+ * the theme, and the asset version is added to every key, so a new app version never sees the
+ * layers of an older one. A layer only keeps the file of its latest key per bitmap size: writing
+ * it deletes the files of its other keys of the same size, so engines of different surface
+ * sizes, like the watch face and its preview in the system picker, keep their files. A file
+ * whose header doesn't match the key asked for is a miss.
+ *
+ * <p>Read on the render thread. Writing copies the pixels there and leaves the file to a
+ * background thread shared by every engine of the process, so the render thread never waits
+ * for the disk and writes never interleave. Failing to read or write only costs the time saved.
+ */
+class LayerDiskCache {
+
+    private static final String TAG = "LayerDiskCache";
+
+    // "EFLX", and the version of the file format
+    private static final int MAGIC = 0x45464C58;
+    private static final int FORMAT_VERSION = 1;
+
+    // Magic, format version, width, height, config and key length, the key follows
+    private static final int HEADER_BYTES = 6 * 4;
+
+    private static final Bitmap.Config[] CONFIGS = {
+            Bitmap.Config.ARGB_8888, Bitmap.Config.RGB_565};
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    // How long the writer thread waits for more layers before it ends
+    private static final long WRITER_KEEP_ALIVE_S = 10;
+
+    private static final ExecutorService WRITER = new ThreadPoolExecutor(0, 1,
+            WRITER_KEEP_ALIVE_S, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+            new ThreadFactory() {
+                @Override
+                public Thread newThread(final Runnable runnable) {
+                    return new Thread(new Runnable() {
+                        @Override
+                        public void run() {
+                            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                            runnable.run();
+                        }
+                    }, "LayerDiskCache");
+                }
+            });
+
+    private final File mDir;
+    private final String mAssetVersion;
+
+    /**
+     * @param dir          directory of the cache files, created when needed
+     * @param assetVersion version of the code and resources the layers are rendered with
+     */
+    LayerDiskCache(File dir, String assetVersion) {
+        mDir = dir;
+        mAssetVersion = assetVersion;
+    }
+
+    /**
+     * Returns the layer rendered for the key in a bitmap from the pool, or null if it isn't
+     * cached.
+     */
+    Bitmap read(String layer, String key, BitmapPool pool) {
+        File file = fileOf(layer, key);
+        if (!file.exists()) {
+            return null;
+        }
+
+        Bitmap bitmap = null;
+        RandomAccessFile input = null;
+        try {
+            input = new RandomAccessFile(file, "r");
+            FileChannel channel = input.getChannel();
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                    channel.size());
+
+            if (buffer.remaining() < HEADER_BYTES || buffer.getInt() != MAGIC
+                    || buffer.getInt() != FORMAT_VERSION) {
+                return null;
+            }
+            int width = buffer.getInt();
+            int height = buffer.getInt();
+            int config = buffer.getInt();
+            byte[] storedKey = new byte[buffer.getInt()];
+            if (config < 0 || config >= CONFIGS.length || storedKey.length > buffer.remaining()) {
+                return null;
+            }
+            buffer.get(storedKey);
+            if (!fullKey(key).equals(new String(storedKey, UTF_8))) {
+                // Another key with the same file name
+                return null;
+            }
+
+            bitmap = pool.get(width, height, CONFIGS[config]);
+            if (buffer.remaining() != bitmap.getByteCount()) {
+                pool.put(bitmap);
+                return null;
+            }
+            bitmap.copyPixelsFromBuffer(buffer);
+            return bitmap;
+        } catch (IOException | RuntimeException e) {
+            Log.w(TAG, "Cannot read " + file, e);
+            pool.put(bitmap);
+            return null;
+        } finally {
+            close(input);
+        }
+    }
+
+    /**
+     * Stores the layer rendered for the key in the background, replacing the files of the other
+     * keys of the layer with the same size. The pixels are copied before it returns, the bitmap
+     * can be changed or given back to the pool right away.
+     */
+    void write(final String layer, final String key, Bitmap bitmap) {
+        final int config = indexOf(bitmap.getConfig());
+        if (config < 0) {
+            return;
+        }
+        final int width = bitmap.getWidth();
+        final int height = bitmap.getHeight();
+        final ByteBuffer pixels = ByteBuffer.allocate(bitmap.getByteCount());
+        bitmap.copyPixelsToBuffer(pixels);
+        pixels.rewind();
+
+        WRITER.execute(new Runnable() {
+            @Override
+            public void run() {
+                writeFile(layer, key, width, height, config, pixels);
+            }
+        });
+    }
+
+    private void writeFile(String layer, String key, int width, int height, int config,
+                           ByteBuffer pixels) {
+        if (!mDir.isDirectory() && !mDir.mkdirs()) {
+            return;
+        }
+
+        File file = fileOf(layer, key);
+        deleteLayer(layer, width, height);
+
+        // Written to a temporary file first, a half written file is never read
+        File temp = new File(mDir, file.getName() + ".tmp");
+        byte[] fullKey = fullKey(key).getBytes(UTF_8);
+        boolean written = false;
+        RandomAccessFile output = null;
+        try {
+            output = new RandomAccessFile(temp, "rw");
+            output.setLength(0);
+            ByteBuffer buffer = output.getChannel().map(FileChannel.MapMode.READ_WRITE, 0,
+                    HEADER_BYTES + fullKey.length + pixels.remaining());
+            buffer.putInt(MAGIC);
+            buffer.putInt(FORMAT_VERSION);
+            buffer.putInt(width);
+            buffer.putInt(height);
+            buffer.putInt(config);
+            buffer.putInt(fullKey.length);
+            buffer.put(fullKey);
+            buffer.put(pixels);
+            written = true;
+        } catch (IOException | RuntimeException e) {
+            Log.w(TAG, "Cannot write " + file, e);
+        } finally {
+            close(output);
+        }
+        if (!written || !temp.renameTo(file)) {
+            temp.delete();
+        }
+    }
+
+    /**
+     * Deletes the files of the layer with the given size, and the ones that can't be read.
+     */
+    private void deleteLayer(String layer, int width, int height) {
+        File[] files = mDir.listFiles();
+        if (files == null) {
+            return;
+        }
+        String prefix = layer + "_";
+        for (File file : files) {
+            if (file.getName().startsWith(prefix) && !hasOtherSize(file, width, height)) {
+                file.delete();
+            }
+        }
+    }
+
+    /**
+     * Returns whether the header of the file holds a valid size other than the given one.
+     */
+    private static boolean hasOtherSize(File file, int width, int height) {
+        RandomAccessFile input = null;
+        try {
+            input = new RandomAccessFile(file, "r");
+            if (input.length() < HEADER_BYTES || input.readInt() != MAGIC
+                    || input.readInt() != FORMAT_VERSION) {
+                return false;
+            }
+            return input.readInt() != width || input.readInt() != height;
+        } catch (IOException e) {
+            return false;
+        } finally {
+            close(input);
+        }
+    }
+
+    private File fileOf(String layer, String key) {
+        return new File(mDir, layer + "_" + Integer.toHexString(fullKey(key).hashCode()));
+    }
+
+    private String fullKey(String key) {
+        return key + " v" + mAssetVersion;
+    }
+
+    private static int indexOf(Bitmap.Config config) {
+        for (int i = 0; i < CONFIGS.length; ++i) {
+            if (CONFIGS[i] == config) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static void close(RandomAccessFile file) {
+        if (file == null) {
+            return;
+        }
+        try {
+            file.close();
+        } catch (IOException e) {
+            // Nothing to do, what was read or written is complete
+        }
+    }
+}
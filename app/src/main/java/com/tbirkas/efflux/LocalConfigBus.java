@@ -0,0 +1,40 @@
+package com.tbirkas.efflux;
+
+import com.google.android.gms.wearable.DataMap;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * In-process fast path for configs picked on the watch. The config activity posts the new config
+ * here and the running engines apply it right away, instead of after the data layer has looped
+ * the DataItem back to the watch face. The DataItem is still written, by
+ * {@link ConfigSyncService}, and the engines skip it when it arrives as nothing changes.
+ *
+ * <p>Only used on the main thread.
+ */
+final class LocalConfigBus {
+
+    interface Listener {
+        void onLocalConfig(DataMap config);
+    }
+
+    private static final List<Listener> sListeners = new ArrayList<>();
+
+    private LocalConfigBus() {
+    }
+
+    static void register(Listener listener) {
+        sListeners.add(listener);
+    }
+
+    static void unregister(Listener listener) {
+        sListeners.remove(listener);
+    }
+
+    static void post(DataMap config) {
+        for (int i = 0; i < sListeners.size(); ++i) {
+            sListeners.get(i).onLocalConfig(config);
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package com.tbirkas.efflux;
+
+import com.tbirkas.efflux.dial.FramePlan;
+
+import java.io.PrintWriter;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Cheap, lock-free counters describing how often the watch face wakes up and draws, and how long
+ * drawing takes. Recording is a few atomic increments so it can stay on in release builds; the
+ * numbers are only formatted when someone runs {@code adb shell dumpsys activity service
+ * com.tbirkas.efflux/.CustomWatchFaceService}.
+ */
+class RenderStats {
+
+    // Sources of invalidate() calls
+    static final int SOURCE_TICK = 0;
+    static final int SOURCE_TIME_TICK = 1;
+    static final int SOURCE_TIME_ZONE = 2;
+    static final int SOURCE_DATA_API = 3;
+    static final int SOURCE_MODE_CHANGE = 4;
+    static final int SOURCE_SWEEP = 5;
+    static final int SOURCE_LOCAL_CONFIG = 6;
+    static final int SOURCE_SYSTEM = 7;
+    private static final String[] SOURCE_NAMES = {
+            "tick", "time tick", "time zone", "data api", "mode change", "sweep", "local config",
+            "system"};
+
+    private static final String[] MODE_NAMES = {"interactive", "ambient", "low-bit ambient"};
+
+    /** Draws longer than a 60 fps frame miss their budget. */
+    private static final long FRAME_BUDGET_NS = TimeUnit.MILLISECONDS.toNanos(16);
+
+    // Upper bounds of the draw time histogram buckets in microseconds, the last bucket is open
+    private static final long[] BUCKET_BOUNDS_US = {500, 1000, 2000, 4000, 8000, 16000, 33000};
+    private static final int BUCKETS = BUCKET_BOUNDS_US.length + 1;
+
+    private static final int MODES = 3;
+
+    private final AtomicLongArray mDrawHistogram = new AtomicLongArray(MODES * BUCKETS);
+    private final AtomicLongArray mDrawCount = new AtomicLongArray(MODES);
+    private final AtomicLongArray mDrawTimeNs = new AtomicLongArray(MODES);
+    private final AtomicLongArray mDrawMaxNs = new AtomicLongArray(MODES);
+    private final AtomicLongArray mDrawOverBudget = new AtomicLongArray(MODES);
+
+    // Frames not drawn as they looked the same as the one on screen
+    private final AtomicLongArray mDrawSkipped = new AtomicLongArray(MODES);
+
+    // Frame requests merged into one that was still pending
+    private final AtomicLong mMergedRequests = new AtomicLong();
+
+    // Lit pixel ratios in millionths, summed and last per mode
+    private final AtomicLongArray mLitRatioSum = new AtomicLongArray(MODES);
+    private final AtomicLongArray mLitRatioCount = new AtomicLongArray(MODES);
+    private final AtomicLongArray mLitRatioLast = new AtomicLongArray(MODES);
+
+    private final AtomicLongArray mInvalidations = new AtomicLongArray(SOURCE_NAMES.length);
+    private final AtomicLong mWakeups = new AtomicLong();
+    private final AtomicLong mBitmapBytes = new AtomicLong();
+
+    // Layers read from the disk cache, and rendered as they weren't there
+    private final AtomicLong mLayerCacheHits = new AtomicLong();
+    private final AtomicLong mLayerCacheMisses = new AtomicLong();
+
+    // Time from the creation of the last engine to its first frame, -1 before any
+    private final AtomicLong mFirstFrameNs = new AtomicLong(-1);
+
+    // Interactive frames drawn from the back buffer, and drawn from scratch as it didn't match
+    private final AtomicLong mPrerenderHits = new AtomicLong();
+    private final AtomicLong mPrerenderMisses = new AtomicLong();
+
+    void onWakeup() {
+        mWakeups.incrementAndGet();
+    }
+
+    void onInvalidate(int source) {
+        mInvalidations.incrementAndGet(source);
+    }
+
+    /**
+     * Records one {@code onDraw} call.
+     *
+     * @param mode       one of the {@link FramePlan} modes
+     * @param durationNs time spent drawing in nanoseconds
+     */
+    void onDraw(int mode, long durationNs) {
+        mDrawCount.incrementAndGet(mode);
+        mDrawTimeNs.addAndGet(mode, durationNs);
+        mDrawHistogram.incrementAndGet(mode * BUCKETS + bucketOf(durationNs));
+        if (durationNs > FRAME_BUDGET_NS) {
+            mDrawOverBudget.incrementAndGet(mode);
+        }
+
+        long max = mDrawMaxNs.get(mode);
+        while (durationNs > max && !mDrawMaxNs.compareAndSet(mode, max, durationNs)) {
+            max = mDrawMaxNs.get(mode);
+        }
+    }
+
+    /**
+     * Records a frame that wasn't drawn, as its {@link com.tbirkas.efflux.dial.FrameFingerprint}
+     * matched the one of the frame on screen.
+     */
+    void onDrawSkipped(int mode) {
+        mDrawSkipped.incrementAndGet(mode);
+    }
+
+    /**
+     * Records a frame request that came while another one was still pending.
+     */
+    void onFrameRequestMerged() {
+        mMergedRequests.incrementAndGet();
+    }
+
+    /**
+     * Records whether a layer could be read from the {@link LayerDiskCache}.
+     */
+    void onLayerCacheRead(boolean hit) {
+        (hit ? mLayerCacheHits : mLayerCacheMisses).incrementAndGet();
+    }
+
+    /**
+     * Records the time from creating an engine to its first frame being posted.
+     */
+    void onFirstFrame(long latencyNs) {
+        mFirstFrameNs.set(latencyNs);
+    }
+
+    /**
+     * Records whether an interactive frame was ready in the back buffer when its tick came.
+     */
+    void onPrerenderedFrame(boolean hit) {
+        (hit ? mPrerenderHits : mPrerenderMisses).incrementAndGet();
+    }
+
+    /**
+     * Records the estimated lit pixel ratio of a frame posted to the screen, see
+     * {@link com.tbirkas.efflux.dial.LitPixelEstimator}.
+     */
+    void onLitRatio(int mode, float ratio) {
+        long millionths = (long) (ratio * 1000000);
+        mLitRatioSum.addAndGet(mode, millionths);
+        mLitRatioCount.incrementAndGet(mode);
+        mLitRatioLast.set(mode, millionths);
+    }
+
+    /**
+     * Updates the bitmap memory in use when an engine replaces a bitmap of {@code oldBytes} with
+     * one of {@code newBytes}. Either can be 0 when a bitmap is created or released.
+     */
+    void onBitmapBytesChanged(long oldBytes, long newBytes) {
+        mBitmapBytes.addAndGet(newBytes - oldBytes);
+    }
+
+    void dump(PrintWriter writer) {
+        writer.println("Render stats:");
+        writer.println("  wakeups: " + mWakeups.get());
+        writer.println("  bitmap memory: " + mBitmapBytes.get() / 1024 + " KiB");
+
+        writer.println("  invalidations:");
+        for (int i = 0; i < SOURCE_NAMES.length; ++i) {
+            writer.println("    " + SOURCE_NAMES[i] + ": " + mInvalidations.get(i));
+        }
+
+        writer.println("  draws:");
+        for (int mode = 0; mode < MODES; ++mode) {
+            long count = mDrawCount.get(mode);
+            long skipped = mDrawSkipped.get(mode);
+            if (count + skipped == 0) {
+                continue;
+            }
+            String skippedText = "skipped " + skipped + " ("
+                    + percentOf(skipped * 1000000 / (skipped + count)) + ")";
+            if (count == 0) {
+                // Every frame of the mode was skipped, there are no draw times
+                writer.println("    " + MODE_NAMES[mode] + ": 0, " + skippedText);
+                continue;
+            }
+            writer.println("    " + MODE_NAMES[mode] + ": " + count
+                    + ", avg " + TimeUnit.NANOSECONDS.toMicros(mDrawTimeNs.get(mode) / count)
+                    + " us"
+                    + ", max " + TimeUnit.NANOSECONDS.toMicros(mDrawMaxNs.get(mode)) + " us"
+                    + ", over budget " + mDrawOverBudget.get(mode) + ", " + skippedText);
+
+            StringBuilder histogram = new StringBuilder("      ");
+            for (int bucket = 0; bucket < BUCKETS; ++bucket) {
+                histogram.append(bucket < BUCKET_BOUNDS_US.length
+                        ? "<" + BUCKET_BOUNDS_US[bucket] : ">=" + BUCKET_BOUNDS_US[bucket - 1]);
+                histogram.append(" us: ").append(mDrawHistogram.get(mode * BUCKETS + bucket));
+                histogram.append(bucket < BUCKETS - 1 ? ", " : "");
+            }
+            writer.println(histogram);
+        }
+
+        writer.println("  merged frame requests: " + mMergedRequests.get());
+
+        long firstFrameNs = mFirstFrameNs.get();
+        if (firstFrameNs >= 0) {
+            writer.println("  first frame: " + TimeUnit.NANOSECONDS.toMillis(firstFrameNs)
+                    + " ms after the engine was created");
+        }
+        writer.println("  layer disk cache: " + mLayerCacheHits.get() + " hits, "
+                + mLayerCacheMisses.get() + " misses");
+        writer.println("  prerendered frames: " + mPrerenderHits.get() + " shown, "
+                + mPrerenderMisses.get() + " missed");
+
+        writer.println("  lit ratio:");
+        for (int mode = 0; mode < MODES; ++mode) {
+            long count = mLitRatioCount.get(mode);
+            if (count == 0) {
+                continue;
+            }
+            writer.println("    " + MODE_NAMES[mode] + ": avg "
+                    + percentOf(mLitRatioSum.get(mode) / count)
+                    + ", last " + percentOf(mLitRatioLast.get(mode)));
+        }
+    }
+
+    private static String percentOf(long millionths) {
+        return String.format(Locale.US, "%.1f%%", millionths / 10000f);
+    }
+
+    private static int bucketOf(long durationNs) {
+        long durationUs = TimeUnit.NANOSECONDS.toMicros(durationNs);
+        for (int i = 0; i < BUCKET_BOUNDS_US.length; ++i) {
+            if (durationUs < BUCKET_BOUNDS_US[i]) {
+                return i;
+            }
+        }
+        return BUCKET_BOUNDS_US.length;
+    }
+}
@@ -0,0 +1,543 @@
+package com.tbirkas.efflux;
+
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Message;
+import android.os.Process;
+import android.os.SystemClock;
+import android.view.SurfaceHolder;
+
+import com.tbirkas.efflux.dial.BurnInShift;
+import com.tbirkas.efflux.dial.DialCanvas;
+import com.tbirkas.efflux.dial.DialPainter;
+import com.tbirkas.efflux.dial.DialPalette;
+import com.tbirkas.efflux.dial.FrameFingerprint;
+import com.tbirkas.efflux.dial.FramePlan;
+import com.tbirkas.efflux.dial.FramePlanner;
+import com.tbirkas.efflux.face.AndroidDialCanvas;
+import com.tbirkas.efflux.face.Theme;
+
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Draws the frames of one engine on a thread of its own, straight into the engine's surface.
+ * The engine publishes a new {@link FrameState} whenever an input changes and requests frames;
+ * requests arriving while one is pending are merged, and each frame is drawn with the latest
+ * state published. The bitmaps and paths the frames are drawn from are owned by this thread.
+ *
+ * <p>In interactive mode, once a frame is on screen the next one is rendered into a
+ * {@link BackBuffer} ahead of its tick, so drawing it takes one bitmap copy. The smooth sweep
+ * draws a new frame every vsync and skips this.
+ *
+ * <p>A frame that would look the same as the one on screen, as told by its
+ * {@link FrameFingerprint}, isn't drawn at all.
+ *
+ * <p>The background and the static layer are read from a {@link LayerDiskCache} when an earlier
+ * process rendered them for the same surface and theme, and written to it once they are on
+ * screen otherwise.
+ *
+ * <p>The main thread only blocks on a draw when the surface is destroyed, which must not return
+ * while the surface is being drawn into, and when a frame has to be on screen before it
+ * returns, see {@link #drawAndWait(long, boolean)}.
+ */
+class RenderThread {
+
+    // The background photo is opaque, 16 bits per pixel are enough
+    private static final Bitmap.Config BACKGROUND_CONFIG = Bitmap.Config.RGB_565;
+
+    // Names of the layers in the LayerDiskCache
+    private static final String LAYER_BACKGROUND = "background";
+    private static final String LAYER_STATIC = "static";
+
+    private final SurfaceHolder mHolder;
+    private final Resources mResources;
+    private final RenderStats mStats;
+    private final BitmapPool mBitmapPool;
+    private final LayerDiskCache mDiskCache;
+
+    // For the time to the first frame
+    private final long mCreatedNs = SystemClock.elapsedRealtimeNanos();
+    private boolean mFirstFramePosted;
+
+    private final HandlerThread mThread;
+    private final Handler mHandler;
+
+    // The latest state published by the engine
+    private final AtomicReference<FrameState> mState =
+            new AtomicReference<>(FrameState.INITIAL);
+
+    // Whether a frame has been requested and not drawn yet
+    private final AtomicBoolean mFramePending = new AtomicBoolean();
+
+    // Held while drawing into the surface
+    private final Object mSurfaceLock = new Object();
+    private boolean mSurfaceValid;
+
+    // Duration of the last frame, read by the engine's frame rate governor
+    private volatile long mLastDrawNs;
+
+    // Whether the last frame requested was skipped as unchanged, read by the governor too
+    private volatile boolean mLastFrameSkipped;
+
+    // Everything below is only used on the render thread
+
+    // The state the resources below were last updated for
+    private FrameState mDrawnState = FrameState.INITIAL;
+
+    // Counts the states drawn, for the fingerprints
+    private int mStateVersion;
+
+    // Fingerprint of the frame on screen
+    private long mShownFingerprint = FrameFingerprint.NONE;
+
+    private Bitmap mBackgroundBitmap;
+
+    // Mean luminance of the background photo, for the lit pixel estimate
+    private float mBackgroundLuma;
+
+    // Bitmap memory of this engine last reported to mStats
+    private long mBitmapBytes;
+
+    // Keys of the layers rendered but not in the disk cache yet, written after the frame
+    private String mUnstoredBackgroundKey;
+    private String mUnstoredStaticLayerKey;
+
+    // Pre-rendered separators, border and dashed circles
+    private final StaticLayerCache mStaticLayer;
+
+    // Pre-rendered ambient frames of the hours
+    private final AmbientFrameCache mAmbientFrames;
+
+    // The next interactive frame, rendered ahead of its tick
+    private final BackBuffer mBackBuffer;
+
+    // Pre-rendered complication slots
+    private final SlotBitmapCache mSlotBitmaps;
+
+    // Whether the cached ambient frames have outlined wedges
+    private boolean mAmbientOutline;
+
+    // Composes the frames and draws the dial layers, shared with the previews of the companion
+    // app and the headless harness
+    private final DialPainter mPainter = new DialPainter();
+
+    // What the painter draws on, pointed at the frame or at the cached layer being rendered
+    private final AndroidDialCanvas mCanvas = new AndroidDialCanvas();
+
+    // Draws the layers of the frames from the caches above
+    private final DialPainter.Layers mCachedLayers = new CachedLayers();
+
+    // Works out the circle and the wedges to draw for the current time
+    private final FramePlanner mPlanner = new FramePlanner();
+
+    RenderThread(SurfaceHolder holder, Resources resources, RenderStats stats,
+                 BitmapPool bitmapPool, LayerDiskCache diskCache) {
+        mHolder = holder;
+        mResources = resources;
+        mStats = stats;
+        mBitmapPool = bitmapPool;
+        mDiskCache = diskCache;
+        mStaticLayer = new StaticLayerCache(bitmapPool);
+        mAmbientFrames = new AmbientFrameCache(bitmapPool);
+        mBackBuffer = new BackBuffer(bitmapPool);
+        mSlotBitmaps = new SlotBitmapCache(bitmapPool);
+
+        // Frames are what the user is looking at, draw them ahead of background work
+        mThread = new HandlerThread("EffluxRender", Process.THREAD_PRIORITY_DISPLAY);
+        mThread.start();
+        mHandler = new Handler(mThread.getLooper()) {
+            @Override
+            public void handleMessage(Message message) {
+                if (R.id.message_draw == message.what) {
+                    draw(false);
+                } else if (R.id.message_prerender == message.what) {
+                    prerender();
+                }
+            }
+        };
+    }
+
+    /**
+     * Makes the state the one the next frames are drawn with. Doesn't request a frame.
+     */
+    void publish(FrameState state) {
+        mState.set(state);
+    }
+
+    /**
+     * Requests a frame, unless one is pending already.
+     */
+    void requestFrame() {
+        if (mFramePending.compareAndSet(false, true)) {
+            mHandler.sendEmptyMessage(R.id.message_draw);
+        } else {
+            mStats.onFrameRequestMerged();
+        }
+    }
+
+    /**
+     * Draws a frame and waits until it has been posted to the surface, or for at most
+     * {@code timeoutMs}. Returns whether the frame was drawn in time.
+     *
+     * @param force whether to draw even if the frame on screen looks the same, when the surface
+     *              may have lost its content
+     */
+    boolean drawAndWait(long timeoutMs, final boolean force) {
+        final CountDownLatch drawn = new CountDownLatch(1);
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                draw(force);
+                drawn.countDown();
+            }
+        });
+        try {
+            return drawn.await(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Tells whether the surface can be drawn into. Called from the surface callbacks of the
+     * engine; once it returns with {@code valid} false, no frame is being drawn.
+     */
+    void setSurfaceValid(boolean valid) {
+        synchronized (mSurfaceLock) {
+            mSurfaceValid = valid;
+        }
+    }
+
+    long getLastDrawNs() {
+        return mLastDrawNs;
+    }
+
+    boolean isLastFrameSkipped() {
+        return mLastFrameSkipped;
+    }
+
+    /**
+     * Gives the bitmaps back to the pool and stops the thread after the frames already requested.
+     */
+    void quit() {
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                mStaticLayer.release();
+                mAmbientFrames.release();
+                mBackBuffer.release();
+                mSlotBitmaps.release();
+                mBitmapPool.put(mBackgroundBitmap);
+                mBackgroundBitmap = null;
+                mStats.onBitmapBytesChanged(mBitmapBytes, 0);
+                mBitmapBytes = 0;
+            }
+        });
+        mThread.quitSafely();
+    }
+
+    /**
+     * Draws a frame of the latest state, unless it would look the same as the one on screen
+     * and {@code force} is false.
+     */
+    private void draw(boolean force) {
+        mFramePending.set(false);
+        FrameState state = mState.get();
+        if (!state.hasSurface() || state.paints == null) {
+            return;
+        }
+        update(state);
+
+        long timeMs = System.currentTimeMillis();
+        FramePlan plan = mPlanner.plan(timeMs, state.getMode());
+        int burnInPosition = state.ambient && state.burnInProtection
+                ? BurnInShift.getPosition(timeMs) : 0;
+        long fingerprint = FrameFingerprint.of(plan, burnInPosition, mStateVersion);
+        if (!force && fingerprint == mShownFingerprint) {
+            mStats.onDrawSkipped(state.getMode());
+            mLastFrameSkipped = true;
+            return;
+        }
+
+        float litRatio;
+        synchronized (mSurfaceLock) {
+            mShownFingerprint = FrameFingerprint.NONE;
+            if (!mSurfaceValid) {
+                return;
+            }
+            Canvas canvas = mHolder.lockCanvas();
+            if (canvas == null) {
+                return;
+            }
+            long startNs = SystemClock.elapsedRealtimeNanos();
+            try {
+                litRatio = drawFrame(canvas, state, plan, timeMs);
+            } finally {
+                mHolder.unlockCanvasAndPost(canvas);
+            }
+            mLastDrawNs = SystemClock.elapsedRealtimeNanos() - startNs;
+            mShownFingerprint = fingerprint;
+            mLastFrameSkipped = false;
+        }
+        // Only frames that made it to the screen count, prerendered or not
+        mStats.onLitRatio(state.getMode(), litRatio);
+        mStats.onDraw(state.getMode(), mLastDrawNs);
+        if (!mFirstFramePosted) {
+            mFirstFramePosted = true;
+            mStats.onFirstFrame(SystemClock.elapsedRealtimeNanos() - mCreatedNs);
+        }
+        storeLayers();
+
+        if (shouldPrerender(state)) {
+            // Runs after the frames requested meanwhile
+            mHandler.removeMessages(R.id.message_prerender);
+            mHandler.sendEmptyMessage(R.id.message_prerender);
+        }
+    }
+
+    /**
+     * Renders the frame of the next visible change of the dial into the back buffer, unless it
+     * is there already.
+     */
+    private void prerender() {
+        FrameState state = mState.get();
+        if (mFramePending.get() || !state.hasSurface() || state.paints == null
+                || !shouldPrerender(state)) {
+            // The frame after the pending one is rendered after it's drawn
+            return;
+        }
+        update(state);
+
+        long timeMs = System.currentTimeMillis();
+        FramePlan plan = mPlanner.plan(timeMs + mPlanner.nextChangeDelayMs(timeMs),
+                FramePlan.MODE_INTERACTIVE);
+        if (mBackBuffer.matches(state, plan.getHour(), plan.getCircleRadius())) {
+            return;
+        }
+        boolean allocates = mBackBuffer.getBitmap() == null;
+        float litRatio = drawInteractiveFrame(
+                mBackBuffer.prepare(state, plan.getHour(), plan.getCircleRadius()), plan, state);
+        mBackBuffer.commit(litRatio);
+        if (allocates) {
+            updateBitmapBytes();
+        }
+        storeLayers();
+    }
+
+    /**
+     * Hands the layers rendered since the last call to the disk cache once they're on screen,
+     * which copies their pixels and writes them in the background.
+     */
+    private void storeLayers() {
+        if (mUnstoredBackgroundKey != null) {
+            mDiskCache.write(LAYER_BACKGROUND, mUnstoredBackgroundKey, mBackgroundBitmap);
+            mUnstoredBackgroundKey = null;
+        }
+        if (mUnstoredStaticLayerKey != null && mStaticLayer.getBitmap() != null) {
+            mDiskCache.write(LAYER_STATIC, mUnstoredStaticLayerKey, mStaticLayer.getBitmap());
+        }
+        mUnstoredStaticLayerKey = null;
+    }
+
+    private static boolean shouldPrerender(FrameState state) {
+        return !state.ambient && !state.smoothSweep;
+    }
+
+    /**
+     * Brings the planner and the cached bitmaps up to date with the state.
+     */
+    private void update(FrameState state) {
+        FrameState drawn = mDrawnState;
+        if (state == drawn) {
+            return;
+        }
+        mDrawnState = state;
+        mStateVersion++;
+
+        if (state.timeZone != drawn.timeZone) {
+            mPlanner.setTimeZone(state.timeZone);
+        }
+        // Ambient frames are drawn once a minute, the circle doesn't sweep there
+        mPlanner.setSmoothSweep(state.smoothSweep && !state.ambient);
+
+        boolean surfaceChanged = state.width != drawn.width || state.height != drawn.height;
+        if (surfaceChanged) {
+            /*
+             * The planner centers the dial on the whole surface.
+             * Ignore the window insets so that, on round watches
+             * with a "chin", the watch face is centered on the entire screen,
+             * not just the usable portion.
+             */
+            mPlanner.setSurfaceSize(state.width, state.height);
+            mPainter.setSurface(mPlanner.getPlan());
+            mCanvas.setSurface(mPlanner.getPlan());
+
+            // Read back as it was drawn before, or the variant made for the surface at build
+            // time, or the original decoded to its width
+            mBitmapPool.put(mBackgroundBitmap);
+            String key = state.width + "x" + state.height + " " + BACKGROUND_CONFIG;
+            mBackgroundBitmap = mDiskCache.read(LAYER_BACKGROUND, key, mBitmapPool);
+            mStats.onLayerCacheRead(mBackgroundBitmap != null);
+            if (mBackgroundBitmap == null) {
+                mBackgroundBitmap = BackgroundLoader.loadForSurface(mResources,
+                        R.drawable.custom_background, state.width, state.height,
+                        BACKGROUND_CONFIG, mBitmapPool);
+                mUnstoredBackgroundKey = key;
+            }
+            mBackgroundLuma = BackgroundLoader.meanLuma(mBackgroundBitmap);
+            mCanvas.setBackground(mBackgroundBitmap);
+        }
+        mCanvas.setPaints(state.paints);
+
+        // The ambient frames are rendered again when needed, don't hold on to them
+        if (surfaceChanged || state.paints != drawn.paints || (drawn.ambient && !state.ambient)) {
+            mAmbientFrames.release();
+        }
+        // Nor to the back buffer while it isn't used
+        if (!shouldPrerender(state)) {
+            mBackBuffer.release();
+        }
+        updateBitmapBytes();
+    }
+
+    /**
+     * Draws the frame and returns its estimated lit pixel ratio.
+     */
+    private float drawFrame(Canvas canvas, FrameState state, FramePlan plan, long timeMs) {
+        if (state.ambient) {
+            return drawAmbientFrame(canvas, plan, state, timeMs);
+        }
+
+        if (shouldPrerender(state)) {
+            boolean prerendered = mBackBuffer.matches(state, plan.getHour(),
+                    plan.getCircleRadius());
+            mStats.onPrerenderedFrame(prerendered);
+            if (prerendered) {
+                canvas.drawBitmap(mBackBuffer.getBitmap(), 0, 0, null);
+                return mBackBuffer.getLitRatio();
+            }
+        }
+        return drawInteractiveFrame(canvas, plan, state);
+    }
+
+    /**
+     * Draws an interactive frame and returns its estimated lit pixel ratio.
+     */
+    private float drawInteractiveFrame(Canvas canvas, FramePlan plan, FrameState state) {
+        mCanvas.setCanvas(canvas);
+        return mPainter.drawInteractiveFrame(mCanvas, plan, state.paints.palette,
+                state.litBudget, mBackgroundLuma, state.lowBitAmbient, state.burnInProtection,
+                mCachedLayers);
+    }
+
+    /**
+     * Ambient mode only draws the gray circle on black and blits the pre-rendered frame of
+     * the current hour on top of it. Returns the estimated lit pixel ratio of the frame.
+     */
+    private float drawAmbientFrame(Canvas canvas, FramePlan plan, FrameState state, long timeMs) {
+        mCanvas.setCanvas(canvas);
+        return mPainter.drawAmbientFrame(mCanvas, plan, state.paints.palette, state.litBudget,
+                state.burnInProtection, timeMs, mCachedLayers);
+    }
+
+    /**
+     * Reads the static layer of the state from the disk cache, or renders it.
+     */
+    private void updateStaticLayer(FrameState state, DialPalette.ModeSpecs separatorSpecs,
+                                   DialPalette.ModeSpecs ringSpecs) {
+        Theme theme = state.paints.theme;
+        String key = String.format(Locale.US, "%dx%d ambient=%b lowBit=%b %08x,%08x,%08x,%d",
+                state.width, state.height, state.ambient, state.lowBitAmbient, theme.accentColor,
+                theme.ringColor, theme.separatorColor, theme.ringStyle);
+
+        Bitmap cached = mDiskCache.read(LAYER_STATIC, key, mBitmapPool);
+        mStats.onLayerCacheRead(cached != null);
+        if (cached != null) {
+            mStaticLayer.restore(cached, state.width, state.height, state.ambient,
+                    state.lowBitAmbient, theme);
+        } else {
+            Canvas target = mCanvas.getCanvas();
+            mCanvas.setCanvas(mStaticLayer.rebuild(state.width, state.height, state.ambient,
+                    state.lowBitAmbient, theme));
+            mPainter.drawStaticLayer(mCanvas, separatorSpecs, ringSpecs);
+            mCanvas.setCanvas(target);
+            mUnstoredStaticLayerKey = key;
+        }
+        updateBitmapBytes();
+    }
+
+    /**
+     * Reports the memory held by this engine's bitmaps to {@link #mStats}.
+     */
+    private void updateBitmapBytes() {
+        long bytes = 0;
+        if (mBackgroundBitmap != null) {
+            bytes += mBackgroundBitmap.getByteCount();
+        }
+        if (mStaticLayer.getBitmap() != null) {
+            bytes += mStaticLayer.getBitmap().getByteCount();
+        }
+        bytes += mAmbientFrames.getByteCount();
+        bytes += mBackBuffer.getByteCount();
+        bytes += mSlotBitmaps.getByteCount();
+        mStats.onBitmapBytesChanged(mBitmapBytes, bytes);
+        mBitmapBytes = bytes;
+    }
+
+    /**
+     * Draws the layers of the frames from the bitmaps they were rendered into before, rendering
+     * the ones that are missing or out of date first. The painter draws on {@link #mCanvas}.
+     */
+    private class CachedLayers implements DialPainter.Layers {
+        @Override
+        public void drawStaticLayer(DialCanvas canvas, DialPalette.ModeSpecs separatorSpecs,
+                                    DialPalette.ModeSpecs ringSpecs) {
+            // Separators, border and dashed circles only change with the surface, mode or theme
+            FrameState state = mDrawnState;
+            if (!mStaticLayer.isValid(state.width, state.height, state.ambient,
+                    state.lowBitAmbient, state.paints.theme)) {
+                updateStaticLayer(state, separatorSpecs, ringSpecs);
+            }
+            mCanvas.getCanvas().drawBitmap(mStaticLayer.getBitmap(), 0, 0, null);
+        }
+
+        @Override
+        public void drawSlots(DialCanvas canvas, DialPalette palette) {
+            // Only the slots whose data changed are rendered again
+            FrameState state = mDrawnState;
+            if (mSlotBitmaps.draw(mCanvas, state.complications, state.paints, mPainter,
+                    state.width, state.height)) {
+                updateBitmapBytes();
+            }
+        }
+
+        @Override
+        public void drawAmbientHourFrame(DialCanvas canvas, int hour,
+                                         DialPalette.ModeSpecs specs, boolean outline) {
+            if (outline != mAmbientOutline) {
+                mAmbientOutline = outline;
+                mAmbientFrames.release();
+            }
+
+            Bitmap frame = mAmbientFrames.get(hour);
+            if (frame == null) {
+                FrameState state = mDrawnState;
+                Canvas target = mCanvas.getCanvas();
+                mCanvas.setCanvas(mAmbientFrames.put(hour, state.width, state.height));
+                mPainter.drawAmbientHourFrame(mCanvas, hour, specs, outline);
+                mCanvas.setCanvas(target);
+                frame = mAmbientFrames.get(hour);
+                updateBitmapBytes();
+            }
+            mCanvas.getCanvas().drawBitmap(frame, 0, 0, null);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.tbirkas.efflux;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+
+import com.tbirkas.efflux.dial.DialPainter;
+import com.tbirkas.efflux.dial.SlotData;
+import com.tbirkas.efflux.face.AndroidDialCanvas;
+import com.tbirkas.efflux.face.PaintBundle;
+
+import java.util.List;
+
+/**
+ * Pre-rendered complication slots, one bitmap each. A slot's bitmap is only redrawn when its
+ * data, the theme or the surface size changes; every other frame just draws the bitmaps at the
+ * places {@link DialPainter#drawSlots} draws the slots at.
+ */
+class SlotBitmapCache {
+
+    private final BitmapPool mPool;
+
+    private final Bitmap[] mBitmaps = new Bitmap[DialPainter.MAX_SLOTS];
+
+    // What each bitmap was rendered from
+    private final SlotData[] mData = new SlotData[DialPainter.MAX_SLOTS];
+    private PaintBundle mPaints;
+
+    SlotBitmapCache(BitmapPool pool) {
+        mPool = pool;
+    }
+
+    /**
+     * Draws the slots that have data on the canvas the dial canvas points at, rendering the ones
+     * that changed first. Returns whether any bitmap was allocated or released.
+     */
+    boolean draw(AndroidDialCanvas canvas, List<SlotData> slots, PaintBundle paints,
+                 DialPainter painter, int width, int height) {
+        Canvas target = canvas.getCanvas();
+        int size = DialPainter.getSlotSize(width);
+        boolean paintsChanged = paints != mPaints;
+        mPaints = paints;
+
+        boolean bytesChanged = false;
+        int count = Math.min(slots.size(), DialPainter.MAX_SLOTS);
+        for (int i = 0; i < DialPainter.MAX_SLOTS; ++i) {
+            SlotData data = i < count ? slots.get(i) : null;
+            if (data == null) {
+                bytesChanged |= release(i);
+                continue;
+            }
+
+            Bitmap bitmap = mBitmaps[i];
+            if (bitmap == null || bitmap.getWidth() != size) {
+                release(i);
+                bitmap = mPool.get(size, size, Bitmap.Config.ARGB_8888);
+                mBitmaps[i] = bitmap;
+                bytesChanged = true;
+            } else if (!paintsChanged && data.equals(mData[i])) {
+                target.drawBitmap(bitmap, DialPainter.getSlotLeft(i, width, size),
+                        DialPainter.getSlotTop(i, height, size), null);
+                continue;
+            }
+
+            bitmap.eraseColor(Color.TRANSPARENT);
+            canvas.setCanvas(new Canvas(bitmap));
+            painter.drawSlot(canvas, data, paints.palette, size);
+            canvas.setCanvas(target);
+            mData[i] = data;
+            target.drawBitmap(bitmap, DialPainter.getSlotLeft(i, width, size),
+                    DialPainter.getSlotTop(i, height, size), null);
+        }
+        return bytesChanged;
+    }
+
+    long getByteCount() {
+        long bytes = 0;
+        for (Bitmap bitmap : mBitmaps) {
+            if (bitmap != null) {
+                bytes += bitmap.getByteCount();
+            }
+        }
+        return bytes;
+    }
+
+    void release() {
+        for (int i = 0; i < DialPainter.MAX_SLOTS; ++i) {
+            release(i);
+        }
+    }
+
+    private boolean release(int slot) {
+        mData[slot] = null;
+        if (mBitmaps[slot] == null) {
+            return false;
+        }
+        mPool.put(mBitmaps[slot]);
+        mBitmaps[slot] = null;
+        return true;
+    }
+}
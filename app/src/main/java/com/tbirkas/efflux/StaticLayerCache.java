@@ -0,0 +1,90 @@
+package com.tbirkas.efflux;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+
+import com.tbirkas.efflux.face.Theme;
+
+/**
+ * Holds the parts of the dial that don't change between frames (the black separators between
+ * the hours, the border for square screens and the 15, 30 and 45 min circles) pre-rendered into
+ * one transparent bitmap. The bitmap is only redrawn when the surface size, the ambient/low-bit
+ * state or the theme changes.
+ */
+class StaticLayerCache {
+
+    private final BitmapPool mPool;
+
+    private Bitmap mBitmap;
+
+    // The state the cached bitmap was rendered for
+    private int mWidth;
+    private int mHeight;
+    private boolean mAmbient;
+    private boolean mLowBitAmbient;
+    private Theme mTheme;
+
+    StaticLayerCache(BitmapPool pool) {
+        mPool = pool;
+    }
+
+    /**
+     * Returns whether the cached bitmap was rendered for the given state and can be drawn as is.
+     */
+    boolean isValid(int width, int height, boolean ambient, boolean lowBitAmbient, Theme theme) {
+        return mBitmap != null
+                && mWidth == width
+                && mHeight == height
+                && mAmbient == ambient
+                && mLowBitAmbient == lowBitAmbient
+                && theme.equals(mTheme);
+    }
+
+    /**
+     * Clears the cached bitmap for the given state and returns a canvas to render the static
+     * layers into. The bitmap is only replaced when the surface size changes.
+     */
+    Canvas rebuild(int width, int height, boolean ambient, boolean lowBitAmbient, Theme theme) {
+        if (mBitmap == null || mBitmap.getWidth() != width || mBitmap.getHeight() != height) {
+            release();
+            mBitmap = mPool.get(width, height, Bitmap.Config.ARGB_8888);
+        }
+        mBitmap.eraseColor(Color.TRANSPARENT);
+
+        mWidth = width;
+        mHeight = height;
+        mAmbient = ambient;
+        mLowBitAmbient = lowBitAmbient;
+        mTheme = theme;
+
+        return new Canvas(mBitmap);
+    }
+
+    /**
+     * Replaces the cached bitmap with one rendered for the given state before, e.g. read from
+     * the {@link LayerDiskCache}.
+     */
+    void restore(Bitmap bitmap, int width, int height, boolean ambient, boolean lowBitAmbient,
+                 Theme theme) {
+        release();
+        mBitmap = bitmap;
+
+        mWidth = width;
+        mHeight = height;
+        mAmbient = ambient;
+        mLowBitAmbient = lowBitAmbient;
+        mTheme = theme;
+    }
+
+    Bitmap getBitmap() {
+        return mBitmap;
+    }
+
+    void release() {
+        if (mBitmap != null) {
+            mPool.put(mBitmap);
+            mBitmap = null;
+        }
+    }
+}
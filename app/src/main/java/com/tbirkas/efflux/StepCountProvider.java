@@ -0,0 +1,87 @@
+package com.tbirkas.efflux;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.hardware.Sensor;
+import android.hardware.SensorEvent;
+import android.hardware.SensorEventListener;
+import android.hardware.SensorManager;
+
+import com.tbirkas.efflux.dial.ComplicationProvider;
+import com.tbirkas.efflux.dial.FastClock;
+import com.tbirkas.efflux.dial.SlotData;
+
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Today's steps, from the step counter sensor, with the level as the part of a daily goal
+ * walked. The sensor counts the steps since boot, so the count of the first event of each day is
+ * kept in the preferences and subtracted. Watches without the sensor leave the slot empty.
+ */
+class StepCountProvider implements ComplicationProvider, SensorEventListener {
+
+    private static final String PREFERENCES = "step_count";
+    private static final String KEY_DAY = "day";
+    private static final String KEY_BASE = "base";
+
+    private static final long DAY_MS = TimeUnit.DAYS.toMillis(1);
+
+    /** Steps that fill the level arc. */
+    private static final int DAILY_GOAL = 10000;
+
+    private final SensorManager mSensorManager;
+    private final Sensor mSensor;
+    private final SharedPreferences mPreferences;
+    private final FastClock mClock = new FastClock(TimeZone.getDefault());
+
+    private Listener mListener;
+
+    StepCountProvider(Context context) {
+        mSensorManager = (SensorManager) context.getSystemService(Context.SENSOR_SERVICE);
+        mSensor = mSensorManager.getDefaultSensor(Sensor.TYPE_STEP_COUNTER);
+        mPreferences = context.getSharedPreferences(PREFERENCES, Context.MODE_PRIVATE);
+    }
+
+    @Override
+    public void start(Listener listener) {
+        if (mSensor == null) {
+            return;
+        }
+        mListener = listener;
+        mClock.setTimeZone(TimeZone.getDefault());
+        // Batched, the slot doesn't need every step as it happens
+        mSensorManager.registerListener(this, mSensor, SensorManager.SENSOR_DELAY_NORMAL,
+                (int) TimeUnit.SECONDS.toMicros(10));
+    }
+
+    @Override
+    public void stop() {
+        if (mListener != null) {
+            mSensorManager.unregisterListener(this);
+            mListener = null;
+        }
+    }
+
+    @Override
+    public void onSensorChanged(SensorEvent event) {
+        long count = (long) event.values[0];
+        long day = mClock.toLocalMillis(System.currentTimeMillis()) / DAY_MS;
+        long base = mPreferences.getLong(KEY_BASE, 0);
+        if (mPreferences.getLong(KEY_DAY, -1) != day || count < base) {
+            // A new day, or the counter was reset by a reboot
+            base = count;
+            mPreferences.edit().putLong(KEY_DAY, day).putLong(KEY_BASE, base).apply();
+        }
+
+        long steps = count - base;
+        if (mListener != null) {
+            mListener.onData(new SlotData(String.valueOf(steps),
+                    Math.min(1f, (float) steps / DAILY_GOAL)));
+        }
+    }
+
+    @Override
+    public void onAccuracyChanged(Sensor sensor, int accuracy) {
+    }
+}
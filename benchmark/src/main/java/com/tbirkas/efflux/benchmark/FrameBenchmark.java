@@ -0,0 +1,139 @@
+package com.tbirkas.efflux.benchmark;
+
+import com.tbirkas.efflux.dial.FramePlan;
+import com.tbirkas.efflux.dial.FramePlanner;
+import com.tbirkas.efflux.harness.HeadlessEngine;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.awt.Shape;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Path2D;
+import java.awt.image.BufferedImage;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the per frame work of the watch face for the common watch resolutions and every hour
+ * of the dial: planning the frame, building one rotated path per wedge as rotating the canvas
+ * for each wedge did, and drawing frames with the watch face's {@code DialPainter} on the
+ * {@link HeadlessEngine}'s Java2D canvas. Frames are drawn without any cached layer like the
+ * previews, and with the cached static layer and ambient frames like the engine. Run with the
+ * GC profiler to see the allocations per frame.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FrameBenchmark {
+
+    private static final long HOUR_MS = TimeUnit.HOURS.toMillis(1);
+
+    @Param({"320", "360", "390", "454"})
+    public int width;
+
+    @Param({"0", "1", "2", "3", "4", "5", "6", "7", "8", "9", "10", "11"})
+    public int hour;
+
+    private FramePlanner mPlanner;
+    private long mTimeMs;
+
+    // The triangle every wedge is rotated from
+    private Path2D.Float mWedge;
+
+    private HeadlessEngine mEngine;
+
+    @Setup
+    public void setUp() {
+        mPlanner = new FramePlanner();
+        mPlanner.setTimeZone(TimeZone.getTimeZone("UTC"));
+        mPlanner.setSurfaceSize(width, width);
+
+        // Half way through the hour, so the circle is drawn at a realistic size
+        mTimeMs = hour * HOUR_MS + HOUR_MS / 2;
+
+        float[] vertices = mPlanner.plan(mTimeMs, FramePlan.MODE_INTERACTIVE).getWedgeVertices();
+        mWedge = new Path2D.Float();
+        mWedge.moveTo(vertices[0], vertices[1]);
+        mWedge.lineTo(vertices[2], vertices[3]);
+        mWedge.lineTo(vertices[4], vertices[5]);
+        mWedge.closePath();
+
+        mEngine = new HeadlessEngine(TimeZone.getTimeZone("UTC"));
+        mEngine.onSurfaceChanged(width, width);
+    }
+
+    @TearDown
+    public void tearDown() {
+        mEngine.release();
+    }
+
+    @Benchmark
+    public FramePlan planFrame() {
+        return mPlanner.plan(mTimeMs, FramePlan.MODE_INTERACTIVE);
+    }
+
+    /**
+     * Builds one rotated path per wedge, the way rotating the canvas for each wedge does.
+     */
+    @Benchmark
+    public void buildWedgePaths(Blackhole blackhole) {
+        FramePlan plan = mPlanner.plan(mTimeMs, FramePlan.MODE_INTERACTIVE);
+        float centerX = plan.getCenterX();
+        float centerY = plan.getCenterY();
+
+        buildWedgePaths(blackhole, mWedge, plan.getLitWedgeAngles(), plan.getLitWedgeCount(),
+                centerX, centerY);
+        buildWedgePaths(blackhole, mWedge, plan.getBlackWedgeAngles(),
+                plan.getBlackWedgeCount(), centerX, centerY);
+        float[] separators = plan.getSeparatorAngles();
+        buildWedgePaths(blackhole, mWedge, separators, separators.length, centerX, centerY);
+    }
+
+    /**
+     * Draws every layer of an interactive frame, like a preview of the companion app.
+     */
+    @Benchmark
+    public BufferedImage renderFrame() {
+        return mEngine.onDrawPreview(mTimeMs);
+    }
+
+    /**
+     * Draws an interactive frame with the cached static layer, like the engine.
+     */
+    @Benchmark
+    public BufferedImage renderCachedFrame() {
+        return mEngine.onDraw(mTimeMs, FramePlan.MODE_INTERACTIVE);
+    }
+
+    /**
+     * Draws the circle of an ambient frame under the cached frame of the hour.
+     */
+    @Benchmark
+    public BufferedImage renderAmbientFrame() {
+        return mEngine.onDraw(mTimeMs, FramePlan.MODE_AMBIENT);
+    }
+
+    private static void buildWedgePaths(Blackhole blackhole, Shape wedge, float[] angles,
+                                        int count, float centerX, float centerY) {
+        for (int i = 0; i < count; ++i) {
+            AffineTransform rotation = AffineTransform.getRotateInstance(
+                    Math.toRadians(angles[i]), centerX, centerY);
+            blackhole.consume(rotation.createTransformedShape(wedge));
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.tbirkas.efflux.dial;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Offsets to move the dial by on screens with burn-in protection, so the same pixels don't stay
+ * lit all the time. The offset steps to the next of a few positions within
+ * {@link #MAX_SHIFT_PX} of the center once per {@link #PERIOD_MS}, in step with the ambient
+ * updates.
+ */
+public final class BurnInShift {
+
+    /** Largest offset on either axis. */
+    public static final int MAX_SHIFT_PX = 3;
+
+    /** How long the dial stays at each offset. */
+    public static final long PERIOD_MS = TimeUnit.MINUTES.toMillis(1);
+
+    // Goes around the center, neighbouring positions are a few pixels apart
+    private static final int[] OFFSETS_X = {0, 2, 3, 2, 0, -2, -3, -2};
+    private static final int[] OFFSETS_Y = {-3, -2, 0, 2, 3, 2, 0, -2};
+
+    /** Number of different offsets. */
+    public static final int POSITIONS = OFFSETS_X.length;
+
+    private BurnInShift() {
+    }
+
+    public static int getOffsetX(long timeMs) {
+        return OFFSETS_X[getPosition(timeMs)];
+    }
+
+    public static int getOffsetY(long timeMs) {
+        return OFFSETS_Y[getPosition(timeMs)];
+    }
+
+    /**
+     * Returns which of the {@link #POSITIONS} offsets the dial is at, the offset only changes
+     * with it.
+     */
+    public static int getPosition(long timeMs) {
+        long period = timeMs / PERIOD_MS;
+        int index = (int) (period % OFFSETS_X.length);
+        return index < 0 ? index + OFFSETS_X.length : index;
+    }
+}
@@ -0,0 +1,25 @@
+package com.tbirkas.efflux.dial;
+
+/**
+ * A local source of complication data, e.g. the battery level. Providers push new data whenever
+ * they have it, as often as they like; {@link ComplicationSlots} decides when it is shown.
+ */
+public interface ComplicationProvider {
+
+    interface Listener {
+        /**
+         * Called with new data, on the thread the provider was started on.
+         */
+        void onData(SlotData data);
+    }
+
+    /**
+     * Starts pushing data to the listener, the current data as soon as possible.
+     */
+    void start(Listener listener);
+
+    /**
+     * Stops pushing data, and releases what {@link #start(Listener)} registered.
+     */
+    void stop();
+}
@@ -0,0 +1,150 @@
+package com.tbirkas.efflux.dial;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The complication slots of the dial and the data each one shows.
+ *
+ * <p>Data pushed by the providers doesn't cause a redraw of its own. It is kept as the pending
+ * data of its slot, replacing what was pending before, and {@link #applyPending(long)} moves it
+ * to the shown data when the face draws its next frame anyway. A slot shows new data at most
+ * once per its minimum refresh interval; data equal to what is shown changes nothing, so the
+ * pre-rendered slot only has to be rebuilt when its data really changes.
+ *
+ * <p>Not thread safe: start the providers on the thread that applies the data.
+ */
+public final class ComplicationSlots {
+
+    private static final class Slot {
+        final ComplicationProvider provider;
+        final long minRefreshMs;
+        SlotData pending;
+        SlotData shown;
+        long shownAtMs;
+        boolean everShown;
+
+        Slot(ComplicationProvider provider, long minRefreshMs) {
+            this.provider = provider;
+            this.minRefreshMs = minRefreshMs;
+        }
+    }
+
+    private final List<Slot> mSlots = new ArrayList<>();
+
+    // The shown data of every slot, replaced as a whole when any changes
+    private List<SlotData> mSnapshot = Collections.emptyList();
+
+    private boolean mStarted;
+
+    /**
+     * Adds a slot showing the data of the provider, and returns its index.
+     *
+     * @param minRefreshMs shortest time between two changes of the data shown
+     */
+    public int addSlot(ComplicationProvider provider, long minRefreshMs) {
+        Slot slot = new Slot(provider, minRefreshMs);
+        mSlots.add(slot);
+        if (mStarted) {
+            start(slot);
+        }
+        mSnapshot = snapshot();
+        return mSlots.size() - 1;
+    }
+
+    /**
+     * Starts the providers of all slots.
+     */
+    public void start() {
+        if (mStarted) {
+            return;
+        }
+        mStarted = true;
+        for (int i = 0; i < mSlots.size(); ++i) {
+            start(mSlots.get(i));
+        }
+    }
+
+    /**
+     * Stops the providers of all slots. The data shown is kept.
+     */
+    public void stop() {
+        if (!mStarted) {
+            return;
+        }
+        mStarted = false;
+        for (int i = 0; i < mSlots.size(); ++i) {
+            mSlots.get(i).provider.stop();
+        }
+    }
+
+    /**
+     * Returns whether a slot has data that {@link #applyPending(long)} hasn't shown yet.
+     */
+    boolean hasPending() {
+        for (int i = 0; i < mSlots.size(); ++i) {
+            if (mSlots.get(i).pending != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Shows the pending data of every slot whose minimum refresh interval has passed, and
+     * returns whether the data shown changed. Pending data of the other slots is kept for a later
+     * frame.
+     */
+    public boolean applyPending(long timeMs) {
+        boolean changed = false;
+        for (int i = 0; i < mSlots.size(); ++i) {
+            Slot slot = mSlots.get(i);
+            if (slot.pending == null) {
+                continue;
+            }
+            if (slot.pending.equals(slot.shown)) {
+                slot.pending = null;
+                continue;
+            }
+            if (slot.everShown && timeMs - slot.shownAtMs < slot.minRefreshMs) {
+                continue;
+            }
+            slot.shown = slot.pending;
+            slot.shownAtMs = timeMs;
+            slot.everShown = true;
+            slot.pending = null;
+            changed = true;
+        }
+        if (changed) {
+            mSnapshot = snapshot();
+        }
+        return changed;
+    }
+
+    /**
+     * Returns the data shown by every slot, null for the slots that have none yet. The list is
+     * immutable and stays the same object until the data shown changes.
+     */
+    public List<SlotData> getShown() {
+        return mSnapshot;
+    }
+
+    private void start(final Slot slot) {
+        slot.provider.start(new ComplicationProvider.Listener() {
+            @Override
+            public void onData(SlotData data) {
+                slot.pending = data;
+            }
+        });
+    }
+
+    private List<SlotData> snapshot() {
+        SlotData[] shown = new SlotData[mSlots.size()];
+        for (int i = 0; i < shown.length; ++i) {
+            shown[i] = mSlots.get(i).shown;
+        }
+        return Collections.unmodifiableList(Arrays.asList(shown));
+    }
+}
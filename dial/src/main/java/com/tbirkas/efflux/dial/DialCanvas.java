@@ -0,0 +1,38 @@
+package com.tbirkas.efflux.dial;
+
+/**
+ * The drawing operations the {@link DialPainter} needs, implemented on the Android canvas by the
+ * watch face and the companion app and on Java2D by the headless harness. Implementations compile
+ * the {@link PaintSpec}s of a {@link DialPalette} into their own paints once, and build the paths
+ * of the {@link WedgeSets} once per surface size.
+ */
+public interface DialCanvas {
+
+    /** Draws the background photo at the top left, with the paint of {@code spec}. */
+    void drawBackground(PaintSpec spec);
+
+    /** Fills the whole canvas with the color. */
+    void drawColor(int color);
+
+    void drawCircle(float centerX, float centerY, float radius, PaintSpec spec);
+
+    /** Draws one of the {@link WedgeSets}. */
+    void drawWedges(int set, PaintSpec spec);
+
+    /** Draws an arc of the oval in the bounds, clockwise from the start angle in degrees. */
+    void drawArc(float left, float top, float right, float bottom, float startAngle,
+                 float sweepAngle, PaintSpec spec);
+
+    /** Draws the text centered on the point, horizontally and vertically. */
+    void drawText(String text, float centerX, float centerY, PaintSpec spec);
+
+    void save();
+
+    void restore();
+
+    void rotate(float degrees, float pivotX, float pivotY);
+
+    void translate(float dx, float dy);
+
+    void scale(float scaleX, float scaleY);
+}
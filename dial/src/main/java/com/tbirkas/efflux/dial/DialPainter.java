@@ -0,0 +1,284 @@
+package com.tbirkas.efflux.dial;
+
+import java.util.List;
+
+/**
+ * Draws the dial for a {@link FramePlan} with the specs of a {@link DialPalette} on any
+ * {@link DialCanvas}: the watch face on its surface and its cached layers, the companion app its
+ * previews and the headless harness its golden images, so all of them show the same face.
+ *
+ * <p>Besides the layers it composes whole frames: it picks the cheapest rendering level that
+ * keeps the frame within a lit pixel budget and the specs of that level. The layers that are
+ * worth caching are drawn through {@link Layers}, so each caller can draw them from its caches.
+ *
+ * <p>Not thread safe: it holds the state of one surface size, use one per thread.
+ */
+public class DialPainter {
+
+    /** Slots there is room for on the dial. */
+    public static final int MAX_SLOTS = 3;
+
+    // Ambient frames are black already, they can only outline the wedges to save power
+    private static final int AMBIENT_LEVELS = (1 << LitPixelEstimator.LEVEL_FULL)
+            | (1 << LitPixelEstimator.LEVEL_OUTLINE);
+
+    private static final int BLACK = 0xFF000000;
+
+    // Centers of the slots as parts of the surface width and height
+    private static final float[] SLOT_CENTERS_X = {0.25f, 0.75f, 0.5f};
+    private static final float[] SLOT_CENTERS_Y = {0.5f, 0.5f, 0.75f};
+
+    // Size of a slot as a part of the surface width
+    private static final float SLOT_SIZE_FRACTION = 0.2f;
+
+    /**
+     * Draws the layers of a frame that only change with the surface, the mode or the theme,
+     * either directly with the painter or from a cache.
+     */
+    public interface Layers {
+        /**
+         * Draws the separators, the border and the 15, 30 and 45 min circles, see
+         * {@link DialPainter#drawStaticLayer}.
+         */
+        void drawStaticLayer(DialCanvas canvas, DialPalette.ModeSpecs separatorSpecs,
+                             DialPalette.ModeSpecs ringSpecs);
+
+        /**
+         * Draws the complication slots, see {@link DialPainter#drawSlots}.
+         */
+        void drawSlots(DialCanvas canvas, DialPalette palette);
+
+        /**
+         * Draws everything of an ambient frame but the circle, see
+         * {@link DialPainter#drawAmbientHourFrame}.
+         */
+        void drawAmbientHourFrame(DialCanvas canvas, int hour, DialPalette.ModeSpecs specs,
+                                  boolean outline);
+    }
+
+    // Keeps the lit part of OLED screens within the budget
+    private final LitPixelEstimator mLitEstimator = new LitPixelEstimator();
+
+    private int mWidth;
+    private int mHeight;
+    private float mCenterX;
+    private float mCenterY;
+
+    /**
+     * Takes the surface dependent part of the plan, after
+     * {@link FramePlanner#setSurfaceSize(int, int)}. The canvas rebuilds its wedge paths
+     * separately.
+     */
+    public void setSurface(FramePlan plan) {
+        mWidth = plan.getWidth();
+        mHeight = plan.getHeight();
+        mCenterX = plan.getCenterX();
+        mCenterY = plan.getCenterY();
+        mLitEstimator.setSurface(plan);
+    }
+
+    /**
+     * Draws an interactive frame, giving up the photo, then brightness, then the solid wedges
+     * to stay within the lit pixel budget. Returns the estimated lit ratio of the frame.
+     *
+     * @param litBudget      the highest lit ratio allowed, 1 for no limit
+     * @param backgroundLuma mean luminance of the background photo, 0 to 1
+     */
+    public float drawInteractiveFrame(DialCanvas canvas, FramePlan plan, DialPalette palette,
+                                      float litBudget, float backgroundLuma,
+                                      boolean lowBitAmbient, boolean burnInProtection,
+                                      Layers layers) {
+        int level = mLitEstimator.selectLevel(plan, litBudget, backgroundLuma,
+                LitPixelEstimator.luma(palette.accentColor), LitPixelEstimator.ALLOW_ALL_LEVELS);
+        float litRatio = mLitEstimator.getLastRatio();
+        DialPalette.ModeSpecs accentSpecs = level >= LitPixelEstimator.LEVEL_DIMMED
+                ? palette.dimmed : palette.interactive;
+        DialPalette.ModeSpecs hourSpecs = lowBitAmbient ? palette.ambient : accentSpecs;
+
+        // Draw the background.
+        if (level >= LitPixelEstimator.LEVEL_BLACK_BACKGROUND) {
+            canvas.drawColor(BLACK);
+        } else {
+            drawBackground(canvas, palette);
+        }
+
+        // The circle grows from the center to the edge of the screen during the hour
+        drawCircle(canvas, plan, lowBitAmbient || burnInProtection
+                ? palette.ambient.circle : accentSpecs.circle);
+
+        // Drawing the hour lines and the leftover black part after the current hour
+        drawWedges(canvas, plan.getHour(), level == LitPixelEstimator.LEVEL_OUTLINE
+                ? hourSpecs.hourOutline : hourSpecs.hour, palette.interactive.black);
+
+        layers.drawStaticLayer(canvas, lowBitAmbient ? palette.ambient : palette.interactive,
+                palette.interactive);
+        layers.drawSlots(canvas, palette);
+        return litRatio;
+    }
+
+    /**
+     * Draws an ambient frame: the circle on black under the rest of the dial for the hour, which
+     * only outlines the wedges if the lit pixel budget requires it. With burn-in protection the
+     * dial is shifted a few pixels every minute. Returns the estimated lit ratio of the frame.
+     */
+    public float drawAmbientFrame(DialCanvas canvas, FramePlan plan, DialPalette palette,
+                                  float litBudget, boolean burnInProtection, long timeMs,
+                                  Layers layers) {
+        DialPalette.ModeSpecs specs = palette.forMode(plan.getMode());
+
+        // The background is black already, only outlining the wedges is left to save power
+        int level = mLitEstimator.selectLevel(plan, litBudget, 0,
+                LitPixelEstimator.luma(specs.circle.color), AMBIENT_LEVELS);
+        float litRatio = mLitEstimator.getLastRatio();
+
+        canvas.drawColor(BLACK);
+        if (burnInProtection) {
+            canvas.save();
+            canvas.translate(BurnInShift.getOffsetX(timeMs), BurnInShift.getOffsetY(timeMs));
+        }
+        drawCircle(canvas, plan, specs.circle);
+        layers.drawAmbientHourFrame(canvas, plan.getHour(), specs,
+                level == LitPixelEstimator.LEVEL_OUTLINE);
+        if (burnInProtection) {
+            canvas.restore();
+        }
+        return litRatio;
+    }
+
+    /**
+     * Draws a whole interactive frame without any cached layer, slot or lit pixel budget.
+     */
+    public void drawFrame(DialCanvas canvas, FramePlan plan, DialPalette palette) {
+        DialPalette.ModeSpecs specs = palette.interactive;
+        drawBackground(canvas, palette);
+        drawCircle(canvas, plan, specs.circle);
+        drawWedges(canvas, plan.getHour(), specs.hour, specs.black);
+        drawStaticLayer(canvas, specs, specs);
+    }
+
+    public void drawBackground(DialCanvas canvas, DialPalette palette) {
+        canvas.drawBackground(palette.background);
+    }
+
+    /**
+     * Draws the circle, which grows from the center to the edge of the screen during the hour.
+     */
+    public void drawCircle(DialCanvas canvas, FramePlan plan, PaintSpec spec) {
+        canvas.drawCircle(mCenterX, mCenterY, plan.getCircleRadius(), spec);
+    }
+
+    /**
+     * Draws the lit wedges of the hours that passed and the black ones after the current hour.
+     */
+    public void drawWedges(DialCanvas canvas, int hour, PaintSpec litSpec, PaintSpec blackSpec) {
+        canvas.drawWedges(WedgeSets.lit(hour), litSpec);
+        canvas.drawWedges(WedgeSets.black(hour), blackSpec);
+    }
+
+    /**
+     * Draws the layers on top of the hours which don't change from frame to frame: the
+     * separators, the border and the 15, 30 and 45 min circles.
+     */
+    public void drawStaticLayer(DialCanvas canvas, DialPalette.ModeSpecs separatorSpecs,
+                                DialPalette.ModeSpecs ringSpecs) {
+        // Drawing black lines between hours
+        canvas.drawWedges(WedgeSets.SEPARATORS, separatorSpecs.separator);
+
+        // Drawing the black border for square screens
+        canvas.drawCircle(mCenterX, mCenterY, (mWidth / 2) + 2, separatorSpecs.border);
+
+        drawDashedCircles(canvas, ringSpecs.half, ringSpecs.quarter);
+    }
+
+    /**
+     * Draws everything but the background and the circle for an hour with the specs of an
+     * ambient mode, which have no anti-aliasing and use low-bit safe colors on low-bit screens.
+     *
+     * @param outline whether to draw only the outlines of the lit wedges
+     */
+    public void drawAmbientHourFrame(DialCanvas canvas, int hour, DialPalette.ModeSpecs specs,
+                                     boolean outline) {
+        drawWedges(canvas, hour, outline ? specs.hourOutline : specs.hour, specs.black);
+        canvas.drawWedges(WedgeSets.SEPARATORS, specs.separator);
+
+        canvas.drawCircle(mCenterX, mCenterY, (mWidth / 2) + 2, specs.border);
+
+        drawDashedCircles(canvas, specs.half, specs.quarter);
+    }
+
+    /**
+     * Draws the slots that have data at their places on the surface.
+     */
+    public void drawSlots(DialCanvas canvas, List<SlotData> slots, DialPalette palette) {
+        int size = getSlotSize(mWidth);
+        int count = Math.min(slots.size(), MAX_SLOTS);
+        for (int i = 0; i < count; ++i) {
+            SlotData data = slots.get(i);
+            if (data == null) {
+                continue;
+            }
+            canvas.save();
+            canvas.translate(getSlotLeft(i, mWidth, size), getSlotTop(i, mHeight, size));
+            drawSlot(canvas, data, palette, size);
+            canvas.restore();
+        }
+    }
+
+    /**
+     * Draws a complication slot into a canvas of {@code size} by {@code size} pixels: a dark
+     * disc with the text of the data and the level as an arc around it.
+     */
+    public void drawSlot(DialCanvas canvas, SlotData data, DialPalette palette, float size) {
+        canvas.save();
+        float scale = size / DialPalette.SLOT_UNITS;
+        canvas.scale(scale, scale);
+
+        float center = DialPalette.SLOT_UNITS / 2;
+        float inset = palette.slotRing.strokeWidth;
+        canvas.drawCircle(center, center, center, palette.slotBackground);
+        if (data.hasLevel()) {
+            canvas.drawArc(inset, inset, DialPalette.SLOT_UNITS - inset,
+                    DialPalette.SLOT_UNITS - inset, -90, 360 * data.level, palette.slotRing);
+        }
+
+        canvas.drawText(data.text, center, center, palette.slotText);
+        canvas.restore();
+    }
+
+    /**
+     * Returns the size of the slots of a surface in pixels.
+     */
+    public static int getSlotSize(int width) {
+        return Math.round(width * SLOT_SIZE_FRACTION);
+    }
+
+    /**
+     * Returns the left edge of a slot of {@link #getSlotSize(int)} pixels. The slots sit on the
+     * left, right and bottom of the dial, in the order they were added.
+     */
+    public static int getSlotLeft(int slot, int width, int size) {
+        return Math.round(width * SLOT_CENTERS_X[slot] - size / 2f);
+    }
+
+    /**
+     * Returns the top edge of a slot of {@link #getSlotSize(int)} pixels.
+     */
+    public static int getSlotTop(int slot, int height, int size) {
+        return Math.round(height * SLOT_CENTERS_Y[slot] - size / 2f);
+    }
+
+    // Draw the dashed 15 and 45 min circles and the 30 min circle
+    private void drawDashedCircles(DialCanvas canvas, PaintSpec halfSpec, PaintSpec quarterSpec) {
+        if (halfSpec == null) {
+            // The theme has no circles
+            return;
+        }
+        canvas.save();
+        canvas.rotate(-3, mCenterX, mCenterY);
+        canvas.drawCircle(mCenterX, mCenterY, ((mWidth) / 4), halfSpec);
+        canvas.drawCircle(mCenterX, mCenterY, ((mWidth) / 8), quarterSpec);
+        canvas.rotate(8, mCenterX, mCenterY);
+        canvas.drawCircle(mCenterX, mCenterY, ((mWidth) / 8 + mWidth / 4), quarterSpec);
+        canvas.restore();
+    }
+}
@@ -0,0 +1,208 @@
+package com.tbirkas.efflux.dial;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Every {@link PaintSpec} the dial is drawn with, compiled once from the colors and the ring
+ * style of a theme. The watch face, the previews of the companion app and the headless harness
+ * all draw with the same palette, each compiling it into the paints of its own canvas.
+ *
+ * <p>Palettes are immutable; a theme change compiles a new one.
+ */
+public final class DialPalette {
+
+    /** The 15 and 45 min circles are dashed, the 30 min circle is solid. */
+    public static final int RING_STYLE_DASHED = 0;
+    /** All three circles are solid. */
+    public static final int RING_STYLE_SOLID = 1;
+    /** No circles. */
+    public static final int RING_STYLE_NONE = 2;
+
+    /** Colors of the default theme. */
+    public static final int DEFAULT_ACCENT_COLOR = 0xFFFFC90E;
+    public static final int DEFAULT_RING_COLOR = 0xFFFFFFFF;
+    public static final int DEFAULT_SEPARATOR_COLOR = 0xFF000000;
+    public static final int DEFAULT_AMBIENT_COLOR = 0xFFC7C7C7;
+
+    /** Size of a complication slot the slot specs are sized for. */
+    public static final float SLOT_UNITS = 100;
+
+    private static final int BLACK = 0xFF000000;
+
+    // Feel free to change these values and see what happens to the watch face.
+    private static final float STROKE_WIDTH = 2f;
+    private static final int SHADOW_RADIUS = 6;
+
+    // Mostly opaque, the dial shows through a little
+    private static final int SLOT_BACKGROUND_COLOR = 0xCC000000;
+
+    /**
+     * The specs of one mode.
+     */
+    public static final class ModeSpecs {
+        /** The lit hour wedges. */
+        public final PaintSpec hour;
+        /** The outlines of the lit hour wedges, drawn instead of them to save power. */
+        public final PaintSpec hourOutline;
+        /** The growing circle. */
+        public final PaintSpec circle;
+        /** The black wedges after the current hour. */
+        public final PaintSpec black;
+        /** The separators between the hours. */
+        public final PaintSpec separator;
+        /** The border for square screens. */
+        public final PaintSpec border;
+        /** The 15 and 45 min circles, null if the theme has none. */
+        public final PaintSpec quarter;
+        /** The 30 min circle, null if the theme has none. */
+        public final PaintSpec half;
+
+        private ModeSpecs(DialPalette palette, boolean ambient, boolean lowBit, float dim) {
+            boolean antiAlias = !ambient;
+            int accentColor = dim(ambient ? palette.ambientColor : palette.accentColor, dim);
+            if (lowBit) {
+                accentColor = toLowBit(accentColor);
+            }
+
+            hour = fill(accentColor, antiAlias);
+            hourOutline = PaintSpec.of(accentColor, PaintSpec.STYLE_STROKE, STROKE_WIDTH,
+                    antiAlias).withRoundJoin();
+            circle = fill(accentColor, antiAlias).withRoundCap();
+            black = fill(BLACK, antiAlias);
+            separator = fill(lowBit ? toLowBit(palette.separatorColor) : palette.separatorColor,
+                    antiAlias);
+            border = PaintSpec.of(BLACK, PaintSpec.STYLE_STROKE, 2, false).withRoundCap();
+
+            if (palette.ringStyle == RING_STYLE_NONE) {
+                quarter = null;
+                half = null;
+            } else {
+                int ringColor = lowBit ? toLowBit(palette.ringColor) : palette.ringColor;
+                PaintSpec ring = ring(ringColor, ambient);
+                quarter = palette.ringStyle == RING_STYLE_DASHED
+                        ? ring.withDash(new float[]{10, 10}, 4) : ring;
+                half = ring(ringColor, ambient);
+            }
+        }
+
+        private void addTo(List<PaintSpec> specs) {
+            Collections.addAll(specs, hour, hourOutline, circle, black, separator, border);
+            if (quarter != null) {
+                Collections.addAll(specs, quarter, half);
+            }
+        }
+    }
+
+    public final int accentColor;
+    public final int ringColor;
+    public final int separatorColor;
+    public final int ambientColor;
+    public final int ringStyle;
+
+    /** Draws the background photo. */
+    public final PaintSpec background;
+
+    public final ModeSpecs interactive;
+    public final ModeSpecs ambient;
+    public final ModeSpecs lowBitAmbient;
+    /** Interactive specs with the accent color dimmed, to stay within a lit pixel budget. */
+    public final ModeSpecs dimmed;
+
+    /**
+     * The complication slots, drawn in interactive mode only. Sized for a slot of
+     * {@link #SLOT_UNITS} units, the slot canvas is scaled to its size.
+     */
+    public final PaintSpec slotBackground;
+    public final PaintSpec slotRing;
+    public final PaintSpec slotText;
+
+    private DialPalette(int accentColor, int ringColor, int separatorColor, int ambientColor,
+                        int ringStyle) {
+        this.accentColor = accentColor;
+        this.ringColor = ringColor;
+        this.separatorColor = separatorColor;
+        this.ambientColor = ambientColor;
+        this.ringStyle = ringStyle;
+
+        background = PaintSpec.of(BLACK, PaintSpec.STYLE_FILL, 0, true).withFilterBitmap();
+
+        interactive = new ModeSpecs(this, false, false, 1);
+        ambient = new ModeSpecs(this, true, false, 1);
+        lowBitAmbient = new ModeSpecs(this, true, true, 1);
+        dimmed = new ModeSpecs(this, false, false, LitPixelEstimator.DIM_FACTOR);
+
+        slotBackground = fill(SLOT_BACKGROUND_COLOR, true);
+        slotRing = PaintSpec.of(accentColor, PaintSpec.STYLE_STROKE, SLOT_UNITS / 16, true)
+                .withRoundCap();
+        slotText = PaintSpec.of(ringColor, PaintSpec.STYLE_FILL, 0, true)
+                .withTextSize(SLOT_UNITS / 4);
+    }
+
+    public static DialPalette compile(int accentColor, int ringColor, int separatorColor,
+                                      int ambientColor, int ringStyle) {
+        return new DialPalette(accentColor, ringColor, separatorColor, ambientColor, ringStyle);
+    }
+
+    /**
+     * Returns the specs for one of the {@link FramePlan} modes.
+     */
+    public ModeSpecs forMode(int mode) {
+        switch (mode) {
+            case FramePlan.MODE_AMBIENT:
+                return ambient;
+            case FramePlan.MODE_LOW_BIT_AMBIENT:
+                return lowBitAmbient;
+            default:
+                return interactive;
+        }
+    }
+
+    /**
+     * Returns every spec of the palette, for compiling them into paints up front.
+     */
+    public List<PaintSpec> getSpecs() {
+        List<PaintSpec> specs = new ArrayList<>();
+        specs.add(background);
+        interactive.addTo(specs);
+        ambient.addTo(specs);
+        lowBitAmbient.addTo(specs);
+        dimmed.addTo(specs);
+        Collections.addAll(specs, slotBackground, slotRing, slotText);
+        return specs;
+    }
+
+    private static PaintSpec fill(int color, boolean antiAlias) {
+        return PaintSpec.of(color, PaintSpec.STYLE_FILL_AND_STROKE, 0, antiAlias);
+    }
+
+    // Ambient circles have no anti-aliasing and shadow
+    private static PaintSpec ring(int color, boolean ambient) {
+        PaintSpec ring = PaintSpec.of(color, PaintSpec.STYLE_STROKE, STROKE_WIDTH, !ambient);
+        if (!ambient) {
+            ring = ring.withRoundCap().withShadow(SHADOW_RADIUS, BLACK);
+        }
+        return ring;
+    }
+
+    private static int dim(int color, float factor) {
+        if (factor == 1) {
+            return color;
+        }
+        return (color & 0xFF000000)
+                | (int) (((color >> 16) & 0xFF) * factor) << 16
+                | (int) (((color >> 8) & 0xFF) * factor) << 8
+                | (int) ((color & 0xFF) * factor);
+    }
+
+    /**
+     * Reduces a color to what low-bit screens can show, every channel fully on or off.
+     */
+    private static int toLowBit(int color) {
+        int red = ((color >> 16) & 0xFF) >= 0x80 ? 0xFF : 0;
+        int green = ((color >> 8) & 0xFF) >= 0x80 ? 0xFF : 0;
+        int blue = (color & 0xFF) >= 0x80 ? 0xFF : 0;
+        return BLACK | red << 16 | green << 8 | blue;
+    }
+}
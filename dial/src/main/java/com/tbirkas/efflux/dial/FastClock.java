@@ -0,0 +1,126 @@
+package com.tbirkas.efflux.dial;
+
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Turns epoch millis into local wall clock millis and the dial fields with integer arithmetic.
+ * The zone offset is cached with the range of times it is valid for, which ends at the next
+ * offset transition, so {@link #toLocalMillis(long)} is two comparisons and an addition and
+ * never allocates. The range is found by probing the zone a day at a time and bisecting to the
+ * millisecond, which only happens after a zone change and once the range runs out.
+ */
+public final class FastClock {
+
+    private static final long HOUR_MS = TimeUnit.HOURS.toMillis(1);
+    private static final long MINUTE_MS = TimeUnit.MINUTES.toMillis(1);
+    private static final long SECOND_MS = TimeUnit.SECONDS.toMillis(1);
+    private static final long DAY_MS = TimeUnit.DAYS.toMillis(1);
+
+    // How far ahead a transition is looked for, the offset is probed again after that
+    private static final int SEARCH_DAYS = 31;
+
+    private TimeZone mTimeZone;
+    private int mOffsetMs;
+
+    // The cached offset is valid for mValidFromMs <= time < mValidUntilMs
+    private long mValidFromMs;
+    private long mValidUntilMs;
+
+    public FastClock(TimeZone timeZone) {
+        setTimeZone(timeZone);
+    }
+
+    /**
+     * Sets the zone and drops the cached offset, call it when the system zone changes.
+     */
+    public void setTimeZone(TimeZone timeZone) {
+        mTimeZone = timeZone;
+        mValidFromMs = Long.MAX_VALUE;
+        mValidUntilMs = Long.MIN_VALUE;
+    }
+
+    /**
+     * Returns the given time shifted by the zone offset at that time.
+     */
+    public long toLocalMillis(long timeMs) {
+        if (timeMs < mValidFromMs || timeMs >= mValidUntilMs) {
+            refresh(timeMs);
+        }
+        return timeMs + mOffsetMs;
+    }
+
+    /**
+     * Returns the first time after the cached range, the next offset transition if there is one
+     * within about a month.
+     */
+    long getValidUntilMs() {
+        return mValidUntilMs;
+    }
+
+    /** Returns the hour on the 12 hour dial, 0 to 11, of a local time. */
+    public static int getHour12(long localMs) {
+        return (int) floorMod(floorDiv(localMs, HOUR_MS), FramePlan.HOURS);
+    }
+
+    /** Returns the milliseconds since the start of the hour of a local time. */
+    public static long getMillisIntoHour(long localMs) {
+        return floorMod(localMs, HOUR_MS);
+    }
+
+    /** Returns the minute of the hour of a local time. */
+    static int getMinute(long localMs) {
+        return (int) (floorMod(localMs, HOUR_MS) / MINUTE_MS);
+    }
+
+    /** Returns the second of the minute of a local time. */
+    static int getSecond(long localMs) {
+        return (int) (floorMod(localMs, MINUTE_MS) / SECOND_MS);
+    }
+
+    private void refresh(long timeMs) {
+        TimeZone zone = mTimeZone;
+        int offset = zone.getOffset(timeMs);
+        long validUntil = timeMs + SEARCH_DAYS * DAY_MS;
+
+        // Zones change their offset at most a few times a year, a day step finds the transition
+        long probe = timeMs;
+        while (probe < validUntil) {
+            long next = probe + DAY_MS;
+            if (zone.getOffset(next) != offset) {
+                validUntil = bisect(zone, probe, next, offset);
+                break;
+            }
+            probe = next;
+        }
+
+        mOffsetMs = offset;
+        mValidFromMs = timeMs;
+        mValidUntilMs = validUntil;
+    }
+
+    // Returns the first time after low with another offset, which high has
+    private static long bisect(TimeZone zone, long low, long high, int offset) {
+        while (high - low > 1) {
+            long middle = low + (high - low) / 2;
+            if (zone.getOffset(middle) == offset) {
+                low = middle;
+            } else {
+                high = middle;
+            }
+        }
+        return high;
+    }
+
+    static long floorDiv(long x, long y) {
+        long q = x / y;
+        if ((x % y != 0) && ((x < 0) != (y < 0))) {
+            q--;
+        }
+        return q;
+    }
+
+    static long floorMod(long x, long y) {
+        return x - floorDiv(x, y) * y;
+    }
+}
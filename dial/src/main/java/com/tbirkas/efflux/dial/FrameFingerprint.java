@@ -0,0 +1,51 @@
+package com.tbirkas.efflux.dial;
+
+/**
+ * A compact summary of what a frame shows, so a frame that would look the same as the one on
+ * screen doesn't have to be drawn. It packs the circle radius quantized to
+ * {@code 1 / }{@link #SUBPIXEL_STEPS} of a pixel, the hour, the mode, the burn-in position and a
+ * version of everything else the frame depends on (theme, surface, config) into one long.
+ *
+ * <p>Circle radii closer than the quantization step are taken as the same frame: the difference
+ * is below what anti-aliasing can show.
+ */
+public final class FrameFingerprint {
+
+    /** Steps per pixel the circle radius is told apart by. */
+    public static final int SUBPIXEL_STEPS = 4;
+
+    /** A fingerprint no frame has, for when nothing is on screen. */
+    public static final long NONE = -1;
+
+    // Bits of the fields, from the lowest
+    private static final int RADIUS_BITS = 20;
+    private static final int HOUR_BITS = 4;
+    private static final int MODE_BITS = 2;
+    private static final int POSITION_BITS = 4;
+    private static final int VERSION_BITS = 63 - RADIUS_BITS - HOUR_BITS - MODE_BITS
+            - POSITION_BITS;
+
+    private FrameFingerprint() {
+    }
+
+    /**
+     * Returns the fingerprint of the frame of the plan.
+     *
+     * @param burnInPosition the {@link BurnInShift#getPosition(long)} the frame is drawn at, 0
+     *                       without burn-in protection
+     * @param version        changes whenever anything else a frame depends on changes
+     */
+    public static long of(FramePlan plan, int burnInPosition, int version) {
+        long radius = Math.round(plan.getCircleRadius() * SUBPIXEL_STEPS);
+        long fingerprint = mask(version, VERSION_BITS);
+        fingerprint = (fingerprint << POSITION_BITS) | mask(burnInPosition, POSITION_BITS);
+        fingerprint = (fingerprint << MODE_BITS) | mask(plan.getMode(), MODE_BITS);
+        fingerprint = (fingerprint << HOUR_BITS) | mask(plan.getHour(), HOUR_BITS);
+        fingerprint = (fingerprint << RADIUS_BITS) | mask(radius, RADIUS_BITS);
+        return fingerprint;
+    }
+
+    private static long mask(long value, int bits) {
+        return value & ((1L << bits) - 1);
+    }
+}
@@ -0,0 +1,135 @@
+package com.tbirkas.efflux.dial;
+
+/**
+ * Everything the watch face needs to draw one frame: the radius of the growing circle and the
+ * rotations of the lit hour wedges, the black wedges after the current hour and the separators
+ * between the hours. A plan is owned by a {@link FramePlanner} and refilled in place for every
+ * frame, so its arrays are allocated once and must not be kept across frames.
+ *
+ * <p>All wedges are the same triangle ({@link #getWedgeVertices()}) rotated around the center
+ * of the surface by the given number of degrees. The triangles of the 12 hour positions and the
+ * 12 separators are also available pre-rotated, so a whole set of wedges can be drawn as one
+ * shape.
+ */
+public final class FramePlan {
+
+    /** Interactive mode, the face is drawn in full color. */
+    public static final int MODE_INTERACTIVE = 0;
+    /** Ambient mode. */
+    public static final int MODE_AMBIENT = 1;
+    /** Ambient mode on a screen that only supports a few bits per color. */
+    public static final int MODE_LOW_BIT_AMBIENT = 2;
+
+    static final int HOURS = 12;
+
+    final float[] mWedgeVertices = new float[6];
+    final float[] mLitWedgeAngles = new float[HOURS];
+    final float[] mBlackWedgeAngles = new float[HOURS];
+    final float[] mSeparatorAngles = new float[HOURS];
+    final float[] mHourWedgeVertices = new float[HOURS * 6];
+    final float[] mSeparatorVertices = new float[HOURS * 6];
+
+    int mLitWedgeCount;
+    int mBlackWedgeCount;
+
+    int mWidth;
+    int mHeight;
+    float mCenterX;
+    float mCenterY;
+
+    int mMode;
+    int mHour;
+    float mCircleRadius;
+
+    FramePlan() {
+    }
+
+    public int getWidth() {
+        return mWidth;
+    }
+
+    public int getHeight() {
+        return mHeight;
+    }
+
+    public float getCenterX() {
+        return mCenterX;
+    }
+
+    public float getCenterY() {
+        return mCenterY;
+    }
+
+    public int getMode() {
+        return mMode;
+    }
+
+    /**
+     * Returns the current hour on a 12 hour dial, between 0 and 11. This is also the number of
+     * lit hour wedges.
+     */
+    public int getHour() {
+        return mHour;
+    }
+
+    public float getCircleRadius() {
+        return mCircleRadius;
+    }
+
+    /**
+     * Returns the triangle every wedge is drawn from as {@code x0, y0, x1, y1, x2, y2}: the
+     * center of the surface and the two corners on the bottom edge.
+     */
+    public float[] getWedgeVertices() {
+        return mWedgeVertices;
+    }
+
+    public int getLitWedgeCount() {
+        return mLitWedgeCount;
+    }
+
+    /**
+     * Returns the rotations in degrees of the lit hour wedges, only the first
+     * {@link #getLitWedgeCount()} entries are used.
+     */
+    public float[] getLitWedgeAngles() {
+        return mLitWedgeAngles;
+    }
+
+    public int getBlackWedgeCount() {
+        return mBlackWedgeCount;
+    }
+
+    /**
+     * Returns the rotations in degrees of the black wedges after the current hour, only the first
+     * {@link #getBlackWedgeCount()} entries are used.
+     */
+    public float[] getBlackWedgeAngles() {
+        return mBlackWedgeAngles;
+    }
+
+    /**
+     * Returns the rotations in degrees of the 12 black separators between the hours.
+     */
+    public float[] getSeparatorAngles() {
+        return mSeparatorAngles;
+    }
+
+    /**
+     * Returns the pre-rotated triangles of the 12 hour positions, 6 floats each like
+     * {@link #getWedgeVertices()}. Position {@code i} is lit once hour {@code i + 1} has passed;
+     * for hour {@code h} positions {@code 0} to {@code h - 1} are lit, position {@code h} is
+     * left open and the rest are black.
+     */
+    public float[] getHourWedgeVertices() {
+        return mHourWedgeVertices;
+    }
+
+    /**
+     * Returns the pre-rotated triangles of the 12 separators, 6 floats each like
+     * {@link #getWedgeVertices()}.
+     */
+    public float[] getSeparatorVertices() {
+        return mSeparatorVertices;
+    }
+}
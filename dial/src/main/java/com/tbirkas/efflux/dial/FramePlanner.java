@@ -0,0 +1,143 @@
+package com.tbirkas.efflux.dial;
+
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Turns the current time, the surface size and the mode into a {@link FramePlan}. The plan is
+ * preallocated and refilled by {@link #plan(long, int)}, which does not allocate, so it can be
+ * called for every frame.
+ */
+public final class FramePlanner {
+
+    private static final long HOUR_MS = TimeUnit.HOURS.toMillis(1);
+    private static final long SECOND_MS = TimeUnit.SECONDS.toMillis(1);
+    private static final float SECONDS_PER_HOUR = TimeUnit.HOURS.toSeconds(1);
+
+    // A hour is 30 degrees, the separators sit halfway between two hours
+    private static final float HOUR_DEGREES = 30;
+    private static final float SEPARATOR_OFFSET_DEGREES = 15;
+
+    // The first hour is drawn at 7 * 30 degrees, as the wedge points down before rotating
+    private static final int FIRST_HOUR_POSITION = 7;
+
+    private final FramePlan mPlan = new FramePlan();
+
+    private final FastClock mClock = new FastClock(TimeZone.getDefault());
+    private boolean mSmoothSweep;
+
+    public void setTimeZone(TimeZone timeZone) {
+        mClock.setTimeZone(timeZone);
+    }
+
+    /**
+     * Sets whether the circle grows continuously with the milliseconds instead of once a
+     * second.
+     */
+    public void setSmoothSweep(boolean smoothSweep) {
+        mSmoothSweep = smoothSweep;
+    }
+
+    /**
+     * Updates the parts of the plan that only depend on the surface: the center, the wedge
+     * triangle, the separator angles and the pre-rotated triangles.
+     */
+    public void setSurfaceSize(int width, int height) {
+        FramePlan plan = mPlan;
+        plan.mWidth = width;
+        plan.mHeight = height;
+        plan.mCenterX = width / 2f;
+        plan.mCenterY = height / 2f;
+
+        // The wedge goes from the center to a 1/6 width wide base on the bottom edge
+        float[] vertices = plan.mWedgeVertices;
+        vertices[0] = (int) plan.mCenterX;
+        vertices[1] = (int) plan.mCenterY;
+        vertices[2] = (width / 2) - (width / 12);
+        vertices[3] = height;
+        vertices[4] = (width / 2) + (width / 12);
+        vertices[5] = height;
+
+        for (int i = 0; i < FramePlan.HOURS; ++i) {
+            float hourAngle = HOUR_DEGREES * (i + FIRST_HOUR_POSITION);
+            plan.mSeparatorAngles[i] = hourAngle + SEPARATOR_OFFSET_DEGREES;
+
+            rotate(vertices, hourAngle, plan.mCenterX, plan.mCenterY,
+                    plan.mHourWedgeVertices, i * vertices.length);
+            rotate(vertices, plan.mSeparatorAngles[i], plan.mCenterX, plan.mCenterY,
+                    plan.mSeparatorVertices, i * vertices.length);
+        }
+    }
+
+    /**
+     * Returns the plan as it was last filled in. The surface dependent parts are always up to
+     * date, the time dependent parts reflect the last call to {@link #plan(long, int)}.
+     */
+    public FramePlan getPlan() {
+        return mPlan;
+    }
+
+    /**
+     * Fills the plan for the given time and mode and returns it. The returned plan is reused by
+     * the next call.
+     */
+    public FramePlan plan(long timeMs, int mode) {
+        FramePlan plan = mPlan;
+        long localMs = mClock.toLocalMillis(timeMs);
+        long millisIntoHour = FastClock.getMillisIntoHour(localMs);
+        int hour = FastClock.getHour12(localMs);
+
+        plan.mMode = mode;
+        plan.mHour = hour;
+
+        // The circle reaches the edge of the screen at the end of the hour, growing every second
+        if (mSmoothSweep) {
+            plan.mCircleRadius = (plan.mWidth / 2) * ((float) millisIntoHour / HOUR_MS);
+        } else {
+            long secondsIntoHour = millisIntoHour / SECOND_MS;
+            plan.mCircleRadius = (plan.mWidth / 2) * (secondsIntoHour / SECONDS_PER_HOUR);
+        }
+
+        // Hours that already passed are lit
+        plan.mLitWedgeCount = hour;
+        for (int i = 0; i < hour; ++i) {
+            plan.mLitWedgeAngles[i] = HOUR_DEGREES * (i + FIRST_HOUR_POSITION);
+        }
+
+        // The current hour is left open so the circle shows through, the rest is black
+        int blackCount = FramePlan.HOURS - 1 - hour;
+        plan.mBlackWedgeCount = blackCount;
+        for (int i = 0; i < blackCount; ++i) {
+            plan.mBlackWedgeAngles[i] = HOUR_DEGREES * (hour + i + FIRST_HOUR_POSITION + 1);
+        }
+
+        return plan;
+    }
+
+    /**
+     * Returns the delay in milliseconds from the given time until the plan next changes visibly.
+     *
+     * @see TickScheduler#nextDelayMs(long, int)
+     */
+    public long nextChangeDelayMs(long timeMs) {
+        long localMs = mClock.toLocalMillis(timeMs);
+        return TickScheduler.nextDelayMs(FastClock.getMillisIntoHour(localMs), mPlan.mWidth);
+    }
+
+    /**
+     * Rotates the points in {@code src} around the pivot like a canvas rotation, clockwise on
+     * screen, and writes them to {@code dst} starting at {@code offset}.
+     */
+    private static void rotate(float[] src, float degrees, float pivotX, float pivotY,
+                               float[] dst, int offset) {
+        double radians = Math.toRadians(degrees);
+        float cos = (float) Math.cos(radians);
+        float sin = (float) Math.sin(radians);
+        for (int i = 0; i < src.length; i += 2) {
+            float x = src[i] - pivotX;
+            float y = src[i + 1] - pivotY;
+            dst[offset + i] = pivotX + x * cos - y * sin;
+            dst[offset + i + 1] = pivotY + x * sin + y * cos;
+        }
+    }
+}
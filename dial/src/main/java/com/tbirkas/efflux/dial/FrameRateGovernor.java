@@ -0,0 +1,124 @@
+package com.tbirkas.efflux.dial;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Picks the frame rate of the smooth sweep from what drawing actually costs. It starts at 60 fps
+ * and steps down to 30, 15 and finally 1 fps when frames overrun their budget or arrive late
+ * because the watch is busy, and steps back up after a run of cheap frames.
+ *
+ * <p>A frame overruns when drawing takes more than half of the frame interval, leaving no room
+ * for composition, or when it arrives more than half an interval later than scheduled.
+ *
+ * <p>It also steps down after a run of frames that didn't change the screen: the circle only
+ * grows by a fraction of a pixel per second, and a lower rate shows the same frames with fewer
+ * wakeups.
+ */
+public final class FrameRateGovernor {
+
+    private static final int[] RATES_HZ = {60, 30, 15, 1};
+
+    private static final long VSYNC_NS = TimeUnit.SECONDS.toNanos(1) / RATES_HZ[0];
+
+    /** Consecutive overruns before stepping down a rate. */
+    private static final int OVERRUNS_TO_STEP_DOWN = 3;
+
+    /** Consecutive frames that changed nothing on screen before stepping down a rate. */
+    private static final int UNCHANGED_TO_STEP_DOWN = 3;
+
+    /** Seconds of good frames before trying the next higher rate. */
+    private static final int GOOD_SECONDS_TO_STEP_UP = 2;
+
+    /** Minimum good frames before stepping up, so the 1 fps rate doesn't bounce straight back. */
+    private static final int MIN_GOOD_FRAMES_TO_STEP_UP = 5;
+
+    // Weight of the newest frame in the average draw cost, as a power of two
+    private static final int AVERAGE_SHIFT = 3;
+
+    private int mLevel;
+    private int mOverruns;
+    private int mUnchanged;
+    private int mGoodFrames;
+    private long mAverageDrawNs;
+    private long mLastFrameTimeNs;
+
+    /**
+     * Forgets the time of the last frame, to be called when the sweep stops so the pause isn't
+     * taken for a late frame. The rate is kept.
+     */
+    public void reset() {
+        mLastFrameTimeNs = 0;
+        mOverruns = 0;
+        mUnchanged = 0;
+        mGoodFrames = 0;
+    }
+
+    public int getFrameRateHz() {
+        return RATES_HZ[mLevel];
+    }
+
+    public long getFrameIntervalNs() {
+        return intervalNs(mLevel);
+    }
+
+    /**
+     * Returns how long to wait after a frame before asking for the next vsync, so lower rates
+     * don't wake up on every vsync.
+     */
+    public long getNextFrameDelayMs() {
+        return TimeUnit.NANOSECONDS.toMillis(Math.max(0, getFrameIntervalNs() - VSYNC_NS));
+    }
+
+    /**
+     * Records a frame.
+     *
+     * @param frameTimeNs vsync time the frame was started for
+     * @param drawNs      time the last draw took
+     * @param changed     whether the last frame requested was drawn, false if it looked the same
+     *                    as the one on screen and was skipped
+     */
+    public void onFrame(long frameTimeNs, long drawNs, boolean changed) {
+        long intervalNs = getFrameIntervalNs();
+        boolean late = mLastFrameTimeNs != 0
+                && frameTimeNs - mLastFrameTimeNs > intervalNs + intervalNs / 2;
+        mLastFrameTimeNs = frameTimeNs;
+
+        if (!changed) {
+            // Nothing was drawn, so the cost says nothing, and a faster rate wouldn't show more
+            mGoodFrames = 0;
+            if (++mUnchanged >= UNCHANGED_TO_STEP_DOWN && mLevel < RATES_HZ.length - 1) {
+                mLevel++;
+                mUnchanged = 0;
+            }
+            return;
+        }
+        mUnchanged = 0;
+
+        mAverageDrawNs += (drawNs - mAverageDrawNs) >> AVERAGE_SHIFT;
+        boolean overBudget = drawNs > intervalNs / 2;
+
+        if (late || overBudget) {
+            mGoodFrames = 0;
+            if (++mOverruns >= OVERRUNS_TO_STEP_DOWN && mLevel < RATES_HZ.length - 1) {
+                mLevel++;
+                mOverruns = 0;
+            }
+            return;
+        }
+
+        mOverruns = 0;
+        int goodFramesToStepUp = Math.max(MIN_GOOD_FRAMES_TO_STEP_UP,
+                RATES_HZ[mLevel] * GOOD_SECONDS_TO_STEP_UP);
+        if (++mGoodFrames >= goodFramesToStepUp && mLevel > 0) {
+            // Only step up when the faster rate would leave plenty of headroom
+            if (mAverageDrawNs < intervalNs(mLevel - 1) / 4) {
+                mLevel--;
+            }
+            mGoodFrames = 0;
+        }
+    }
+
+    private static long intervalNs(int level) {
+        return TimeUnit.SECONDS.toNanos(1) / RATES_HZ[level];
+    }
+}
@@ -0,0 +1,171 @@
+package com.tbirkas.efflux.dial;
+
+/**
+ * Estimates how much of an OLED screen a {@link FramePlan} lights up, and picks the cheapest
+ * rendering level that keeps it within a budget.
+ *
+ * <p>The ratio is the mean luminance of the frame relative to a fully white screen, so a screen
+ * of 50% gray counts as half lit: OLED power grows with both the number of lit pixels and their
+ * brightness. It is sampled on a coarse grid over the surface. Which wedge or separator each
+ * sample falls into only depends on the surface and is worked out in
+ * {@link #setSurface(FramePlan)}, so an estimate is one pass over the samples and allocates
+ * nothing. The thin rings and the border are ignored.
+ */
+public final class LitPixelEstimator {
+
+    /** The background photo and solid accent wedges. */
+    public static final int LEVEL_FULL = 0;
+    /** Black instead of the background photo. */
+    public static final int LEVEL_BLACK_BACKGROUND = 1;
+    /** Black background and the accent color dimmed by {@link #DIM_FACTOR}. */
+    public static final int LEVEL_DIMMED = 2;
+    /** Black background, dimmed accent and only the outlines of the lit wedges. */
+    public static final int LEVEL_OUTLINE = 3;
+
+    private static final int LEVELS = 4;
+
+    /** Every level may be used. */
+    public static final int ALLOW_ALL_LEVELS = (1 << LEVELS) - 1;
+
+    /** Luminance factor of the dimmed accent color. */
+    public static final float DIM_FACTOR = 0.5f;
+
+    // Samples per side of the grid
+    private static final int GRID = 40;
+
+    private static final byte SEPARATOR = -2;
+    private static final byte NONE = -1;
+
+    // Per sample the hour position of the wedge it is in, SEPARATOR or NONE
+    private final byte[] mWedges = new byte[GRID * GRID];
+    // Per sample the squared distance from the center
+    private final float[] mDistances = new float[GRID * GRID];
+
+    private float mLastRatio;
+
+    /**
+     * Sorts the samples into the wedges and separators of the surface dependent part of the
+     * plan, after {@link FramePlanner#setSurfaceSize(int, int)}.
+     */
+    public void setSurface(FramePlan plan) {
+        float[] wedges = plan.getHourWedgeVertices();
+        float[] separators = plan.getSeparatorVertices();
+        float stepX = (float) plan.getWidth() / GRID;
+        float stepY = (float) plan.getHeight() / GRID;
+
+        for (int row = 0; row < GRID; ++row) {
+            float y = (row + 0.5f) * stepY;
+            for (int column = 0; column < GRID; ++column) {
+                float x = (column + 0.5f) * stepX;
+                int sample = row * GRID + column;
+
+                float dx = x - plan.getCenterX();
+                float dy = y - plan.getCenterY();
+                mDistances[sample] = dx * dx + dy * dy;
+
+                // The separators are drawn last, over the wedges
+                byte wedge = NONE;
+                for (int i = 0; i < FramePlan.HOURS && wedge == NONE; ++i) {
+                    if (contains(separators, i * 6, x, y)) {
+                        wedge = SEPARATOR;
+                    }
+                }
+                for (int i = 0; i < FramePlan.HOURS && wedge == NONE; ++i) {
+                    if (contains(wedges, i * 6, x, y)) {
+                        wedge = (byte) i;
+                    }
+                }
+                mWedges[sample] = wedge;
+            }
+        }
+    }
+
+    /**
+     * Returns the lit ratio of the plan drawn at the given level.
+     *
+     * @param backgroundLuma mean luminance of the background, 0 to 1
+     * @param accentLuma     luminance of the wedges and the circle, 0 to 1
+     */
+    public float estimate(FramePlan plan, int level, float backgroundLuma, float accentLuma) {
+        float background = level >= LEVEL_BLACK_BACKGROUND ? 0 : backgroundLuma;
+        float accent = level >= LEVEL_DIMMED ? accentLuma * DIM_FACTOR : accentLuma;
+        boolean outline = level >= LEVEL_OUTLINE;
+        int hour = plan.getHour();
+        float radius = plan.getCircleRadius();
+        float radiusSquared = radius * radius;
+
+        float sum = 0;
+        for (int sample = 0; sample < mWedges.length; ++sample) {
+            int wedge = mWedges[sample];
+            if (wedge == SEPARATOR || wedge > hour) {
+                // Black separators and the black wedges after the current hour
+                continue;
+            }
+            if (wedge != NONE && wedge < hour && !outline) {
+                sum += accent;
+            } else {
+                // The circle or the background shows through
+                sum += mDistances[sample] < radiusSquared ? accent : background;
+            }
+        }
+        return sum / mWedges.length;
+    }
+
+    /**
+     * Returns the first of the allowed levels whose lit ratio is within the budget, or the last
+     * allowed one if none is. {@link #getLastRatio()} returns the ratio of the returned level.
+     *
+     * @param budget        the highest lit ratio allowed, 1 for no limit
+     * @param allowedLevels bit {@code 1 << level} set for every level that may be used
+     */
+    public int selectLevel(FramePlan plan, float budget, float backgroundLuma, float accentLuma,
+                           int allowedLevels) {
+        int selected = LEVEL_FULL;
+        for (int level = 0; level < LEVELS; ++level) {
+            if ((allowedLevels & (1 << level)) == 0) {
+                continue;
+            }
+            selected = level;
+            mLastRatio = estimate(plan, level, backgroundLuma, accentLuma);
+            if (mLastRatio <= budget) {
+                break;
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * Returns the lit ratio of the level last returned by
+     * {@link #selectLevel(FramePlan, float, float, float, int)}.
+     */
+    public float getLastRatio() {
+        return mLastRatio;
+    }
+
+    /**
+     * Returns the relative luminance of an ARGB color, 0 to 1, ignoring alpha.
+     */
+    public static float luma(int color) {
+        int red = (color >> 16) & 0xFF;
+        int green = (color >> 8) & 0xFF;
+        int blue = color & 0xFF;
+        return (0.2126f * red + 0.7152f * green + 0.0722f * blue) / 255;
+    }
+
+    // Whether the point is in the triangle of the 6 vertices starting at offset
+    private static boolean contains(float[] vertices, int offset, float x, float y) {
+        float d1 = cross(vertices[offset], vertices[offset + 1],
+                vertices[offset + 2], vertices[offset + 3], x, y);
+        float d2 = cross(vertices[offset + 2], vertices[offset + 3],
+                vertices[offset + 4], vertices[offset + 5], x, y);
+        float d3 = cross(vertices[offset + 4], vertices[offset + 5],
+                vertices[offset], vertices[offset + 1], x, y);
+        boolean negative = d1 < 0 || d2 < 0 || d3 < 0;
+        boolean positive = d1 > 0 || d2 > 0 || d3 > 0;
+        return !(negative && positive);
+    }
+
+    private static float cross(float ax, float ay, float bx, float by, float x, float y) {
+        return (bx - ax) * (y - ay) - (by - ay) * (x - ax);
+    }
+}
@@ -0,0 +1,96 @@
+package com.tbirkas.efflux.dial;
+
+/**
+ * How one element of the dial is painted, independent of the canvas it is painted on. Each
+ * {@link DialCanvas} compiles the specs of a {@link DialPalette} into its own paints once, so no
+ * paint is configured per frame.
+ *
+ * <p>Specs are immutable, the {@code with...} methods return changed copies. They are told apart
+ * by identity, a palette creates each one once.
+ */
+public final class PaintSpec {
+
+    /** Fills the shape. */
+    public static final int STYLE_FILL = 0;
+    /** Fills the shape and strokes its outline, a hairline for a stroke width of 0. */
+    public static final int STYLE_FILL_AND_STROKE = 1;
+    /** Strokes the outline of the shape. */
+    public static final int STYLE_STROKE = 2;
+
+    public final int color;
+    public final int style;
+    public final float strokeWidth;
+    public final boolean antiAlias;
+    public final boolean roundCap;
+    public final boolean roundJoin;
+    public final float dashPhase;
+    /** Radius of a shadow under the shape, 0 for none. */
+    public final float shadowRadius;
+    public final int shadowColor;
+    /** Size of the text, which is centered on its position. */
+    public final float textSize;
+    public final boolean filterBitmap;
+
+    // Lengths of the dashes and gaps, null for a solid line
+    private final float[] mDashIntervals;
+
+    private PaintSpec(int color, int style, float strokeWidth, boolean antiAlias,
+                      boolean roundCap, boolean roundJoin, float[] dashIntervals,
+                      float dashPhase, float shadowRadius, int shadowColor, float textSize,
+                      boolean filterBitmap) {
+        this.color = color;
+        this.style = style;
+        this.strokeWidth = strokeWidth;
+        this.antiAlias = antiAlias;
+        this.roundCap = roundCap;
+        this.roundJoin = roundJoin;
+        mDashIntervals = dashIntervals;
+        this.dashPhase = dashPhase;
+        this.shadowRadius = shadowRadius;
+        this.shadowColor = shadowColor;
+        this.textSize = textSize;
+        this.filterBitmap = filterBitmap;
+    }
+
+    public static PaintSpec of(int color, int style, float strokeWidth, boolean antiAlias) {
+        return new PaintSpec(color, style, strokeWidth, antiAlias, false, false, null, 0, 0, 0,
+                0, false);
+    }
+
+    public PaintSpec withRoundCap() {
+        return new PaintSpec(color, style, strokeWidth, antiAlias, true, roundJoin,
+                mDashIntervals, dashPhase, shadowRadius, shadowColor, textSize, filterBitmap);
+    }
+
+    public PaintSpec withRoundJoin() {
+        return new PaintSpec(color, style, strokeWidth, antiAlias, roundCap, true,
+                mDashIntervals, dashPhase, shadowRadius, shadowColor, textSize, filterBitmap);
+    }
+
+    public PaintSpec withDash(float[] intervals, float phase) {
+        return new PaintSpec(color, style, strokeWidth, antiAlias, roundCap, roundJoin,
+                intervals.clone(), phase, shadowRadius, shadowColor, textSize, filterBitmap);
+    }
+
+    public PaintSpec withShadow(float radius, int color) {
+        return new PaintSpec(this.color, style, strokeWidth, antiAlias, roundCap, roundJoin,
+                mDashIntervals, dashPhase, radius, color, textSize, filterBitmap);
+    }
+
+    public PaintSpec withTextSize(float size) {
+        return new PaintSpec(color, style, strokeWidth, antiAlias, roundCap, roundJoin,
+                mDashIntervals, dashPhase, shadowRadius, shadowColor, size, filterBitmap);
+    }
+
+    public PaintSpec withFilterBitmap() {
+        return new PaintSpec(color, style, strokeWidth, antiAlias, roundCap, roundJoin,
+                mDashIntervals, dashPhase, shadowRadius, shadowColor, textSize, true);
+    }
+
+    /**
+     * Returns the lengths of the dashes and gaps of the line, or null for a solid line.
+     */
+    public float[] getDashIntervals() {
+        return mDashIntervals != null ? mDashIntervals.clone() : null;
+    }
+}
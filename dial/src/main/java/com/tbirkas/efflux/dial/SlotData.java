@@ -0,0 +1,48 @@
+package com.tbirkas.efflux.dial;
+
+/**
+ * What a complication slot shows: a short text and optionally a level drawn as an arc around
+ * it, e.g. "87%" and 0.87 for the battery. Immutable; slots compare data with
+ * {@link #equals(Object)} to tell whether anything changed.
+ */
+public final class SlotData {
+
+    /** Level of data without one, only the text is shown. */
+    public static final float NO_LEVEL = -1;
+
+    public final String text;
+
+    /** From 0 to 1, or {@link #NO_LEVEL}. */
+    public final float level;
+
+    public SlotData(String text, float level) {
+        this.text = text;
+        this.level = level;
+    }
+
+    public boolean hasLevel() {
+        return level != NO_LEVEL;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof SlotData)) {
+            return false;
+        }
+        SlotData other = (SlotData) o;
+        return Float.compare(level, other.level) == 0 && text.equals(other.text);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * text.hashCode() + Float.floatToIntBits(level);
+    }
+
+    @Override
+    public String toString() {
+        return "SlotData{" + text + ", " + level + "}";
+    }
+}
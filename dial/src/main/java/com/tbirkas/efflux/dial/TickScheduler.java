@@ -0,0 +1,45 @@
+package com.tbirkas.efflux.dial;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Works out from the dial geometry when the next visible change will happen, so the update timer
+ * can sleep until then instead of waking up every second. The growing circle reaches the edge of
+ * the screen in an hour, so on a watch it grows by well under a pixel each second; the only other
+ * change is the next hour wedge, which lights up when the circle starts again.
+ */
+public final class TickScheduler {
+
+    private static final long SECOND_MS = TimeUnit.SECONDS.toMillis(1);
+    private static final long SECONDS_PER_HOUR = TimeUnit.HOURS.toSeconds(1);
+    private static final long HOUR_MS = TimeUnit.HOURS.toMillis(1);
+
+    private TickScheduler() {
+    }
+
+    /**
+     * Returns the delay in milliseconds until the growing circle's radius reaches the next whole
+     * pixel, or until the next hour starts, whichever comes first.
+     *
+     * @param millisIntoHour milliseconds elapsed in the current hour (local time)
+     * @param width          width of the surface in pixels
+     */
+    public static long nextDelayMs(long millisIntoHour, int width) {
+        long radius = width / 2;
+        if (radius <= 0) {
+            // Surface not known yet, fall back to ticking every second
+            return SECOND_MS - (millisIntoHour % SECOND_MS);
+        }
+
+        // The radius only changes on whole seconds: radius * second / 3600
+        long second = millisIntoHour / SECOND_MS;
+        long pixel = radius * second / SECONDS_PER_HOUR;
+
+        // First whole second at which the radius reaches pixel + 1
+        long nextSecond = ((pixel + 1) * SECONDS_PER_HOUR + radius - 1) / radius;
+        nextSecond = Math.max(nextSecond, second + 1);
+
+        long nextChangeMs = Math.min(nextSecond * SECOND_MS, HOUR_MS);
+        return nextChangeMs - millisIntoHour;
+    }
+}
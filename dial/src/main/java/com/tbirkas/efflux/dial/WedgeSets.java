@@ -0,0 +1,51 @@
+package com.tbirkas.efflux.dial;
+
+/**
+ * The groups of wedges the dial draws as one path each: for each of the 12 hours one set with
+ * all the lit wedges and one with all the black wedges after the current hour, and one set with
+ * the 12 separators. A {@link DialCanvas} builds one path per set from the pre-rotated triangles
+ * of the {@link FramePlan} once per surface size, so a frame draws at most three paths instead of
+ * rotating the canvas for each wedge.
+ */
+public final class WedgeSets {
+
+    /** Number of sets, they are numbered from 0. */
+    public static final int COUNT = 2 * FramePlan.HOURS + 1;
+
+    /** The separators between the hours. */
+    public static final int SEPARATORS = 2 * FramePlan.HOURS;
+
+    /** Floats per triangle in the vertex arrays. */
+    public static final int VERTICES_PER_WEDGE = 6;
+
+    private WedgeSets() {
+    }
+
+    /** Returns the set of the lit wedges of the hours that passed. */
+    public static int lit(int hour) {
+        return hour;
+    }
+
+    /** Returns the set of the black wedges after the current hour. */
+    public static int black(int hour) {
+        return FramePlan.HOURS + hour;
+    }
+
+    /**
+     * Returns the triangles the set is taken from, {@link #VERTICES_PER_WEDGE} floats each.
+     */
+    public static float[] getVertices(FramePlan plan, int set) {
+        return set == SEPARATORS ? plan.getSeparatorVertices() : plan.getHourWedgeVertices();
+    }
+
+    /** Returns the index of the first triangle of the set. */
+    public static int getFirst(int set) {
+        // The current hour is left open
+        return set < FramePlan.HOURS || set == SEPARATORS ? 0 : set - FramePlan.HOURS + 1;
+    }
+
+    /** Returns the index after the last triangle of the set. */
+    public static int getEnd(int set) {
+        return set < FramePlan.HOURS ? set : FramePlan.HOURS;
+    }
+}
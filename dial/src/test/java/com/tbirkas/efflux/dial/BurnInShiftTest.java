@@ -0,0 +1,26 @@
+package com.tbirkas.efflux.dial;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class BurnInShiftTest {
+
+    @Test
+    public void staysNearTheCenterAndMovesEveryPeriod() {
+        int moves = 0;
+        long period = BurnInShift.PERIOD_MS;
+        for (long timeMs = 0; timeMs < 20 * period; timeMs += period) {
+            int x = BurnInShift.getOffsetX(timeMs);
+            int y = BurnInShift.getOffsetY(timeMs);
+            assertTrue(Math.abs(x) <= BurnInShift.MAX_SHIFT_PX);
+            assertTrue(Math.abs(y) <= BurnInShift.MAX_SHIFT_PX);
+            if (x != BurnInShift.getOffsetX(timeMs + period)
+                    || y != BurnInShift.getOffsetY(timeMs + period)) {
+                ++moves;
+            }
+        }
+        assertEquals(20, moves);
+    }
+}
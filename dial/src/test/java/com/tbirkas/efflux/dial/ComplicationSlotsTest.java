@@ -0,0 +1,116 @@
+package com.tbirkas.efflux.dial;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ComplicationSlotsTest {
+
+    private static final long MIN_REFRESH_MS = 1000;
+
+    /** Pushes whatever the test tells it to. */
+    private static class FakeProvider implements ComplicationProvider {
+        private Listener mListener;
+        private int mStarts;
+
+        @Override
+        public void start(Listener listener) {
+            mListener = listener;
+            mStarts++;
+        }
+
+        @Override
+        public void stop() {
+            mListener = null;
+        }
+
+        boolean push(String text) {
+            if (mListener == null) {
+                return false;
+            }
+            mListener.onData(new SlotData(text, SlotData.NO_LEVEL));
+            return true;
+        }
+    }
+
+    private FakeProvider mBattery;
+    private FakeProvider mSteps;
+    private ComplicationSlots mSlots;
+
+    @Before
+    public void setUp() {
+        mBattery = new FakeProvider();
+        mSteps = new FakeProvider();
+        mSlots = new ComplicationSlots();
+        mSlots.addSlot(mBattery, MIN_REFRESH_MS);
+        mSlots.addSlot(mSteps, 0);
+        mSlots.start();
+    }
+
+    @Test
+    public void pushesWaitForTheNextFrame() {
+        mBattery.push("90%");
+        assertTrue(mSlots.hasPending());
+        assertNull(mSlots.getShown().get(0));
+
+        assertTrue(mSlots.applyPending(0));
+        assertEquals("90%", mSlots.getShown().get(0).text);
+        assertFalse(mSlots.hasPending());
+    }
+
+    @Test
+    public void burstsOfPushesAreCoalesced() {
+        mSteps.push("10");
+        mSteps.push("11");
+        mSteps.push("12");
+
+        assertTrue(mSlots.applyPending(0));
+        assertEquals("12", mSlots.getShown().get(1).text);
+        assertFalse(mSlots.applyPending(1));
+    }
+
+    @Test
+    public void slotsRefreshAtMostOncePerInterval() {
+        mBattery.push("90%");
+        mSlots.applyPending(0);
+
+        mBattery.push("89%");
+        assertFalse(mSlots.applyPending(MIN_REFRESH_MS - 1));
+        assertEquals("90%", mSlots.getShown().get(0).text);
+        assertTrue(mSlots.hasPending());
+
+        assertTrue(mSlots.applyPending(MIN_REFRESH_MS));
+        assertEquals("89%", mSlots.getShown().get(0).text);
+    }
+
+    @Test
+    public void equalDataChangesNothing() {
+        mSteps.push("10");
+        mSlots.applyPending(0);
+        List<SlotData> shown = mSlots.getShown();
+
+        mSteps.push("10");
+        assertFalse(mSlots.applyPending(1));
+        assertFalse(mSlots.hasPending());
+        assertSame(shown, mSlots.getShown());
+    }
+
+    @Test
+    public void stoppedProvidersArentListenedTo() {
+        mSlots.stop();
+        assertFalse(mBattery.push("90%"));
+
+        mSlots.start();
+        mSlots.start();
+        assertEquals(2, mBattery.mStarts);
+        assertTrue(mBattery.push("90%"));
+        assertTrue(mSlots.applyPending(0));
+    }
+}
@@ -0,0 +1,83 @@
+package com.tbirkas.efflux.dial;
+
+import org.junit.Test;
+
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+public class FastClockTest {
+
+    private static final long MINUTE_MS = TimeUnit.MINUTES.toMillis(1);
+    private static final long HOUR_MS = TimeUnit.HOURS.toMillis(1);
+    private static final long DAY_MS = TimeUnit.DAYS.toMillis(1);
+
+    // 2016-01-01T00:00:00Z
+    private static final long START_MS = 1451606400000L;
+
+    private static final TimeZone NEW_YORK = TimeZone.getTimeZone("America/New_York");
+
+    @Test
+    public void matchesCalendarForAYear() {
+        assertMatchesCalendar(NEW_YORK, START_MS, START_MS + 366 * DAY_MS, 7 * MINUTE_MS + 13);
+        assertMatchesCalendar(TimeZone.getTimeZone("Australia/Lord_Howe"), START_MS,
+                START_MS + 366 * DAY_MS, 7 * MINUTE_MS + 13);
+    }
+
+    @Test
+    public void validRangeEndsAtTheTransition() {
+        // Daylight saving time started on 2016-03-13T07:00:00Z in New York
+        long transitionMs = 1457852400000L;
+        FastClock clock = new FastClock(NEW_YORK);
+
+        assertEquals(transitionMs - 1 - 5 * HOUR_MS, clock.toLocalMillis(transitionMs - 1));
+        assertEquals(transitionMs, clock.getValidUntilMs());
+        assertEquals(transitionMs - 4 * HOUR_MS, clock.toLocalMillis(transitionMs));
+    }
+
+    @Test
+    public void followsTheClockBackwards() {
+        assertMatchesCalendar(NEW_YORK, START_MS + 366 * DAY_MS, START_MS, -3 * HOUR_MS - 17);
+    }
+
+    @Test
+    public void zoneChangeDropsTheCachedOffset() {
+        FastClock clock = new FastClock(TimeZone.getTimeZone("UTC"));
+        assertEquals(START_MS, clock.toLocalMillis(START_MS));
+
+        clock.setTimeZone(NEW_YORK);
+        assertEquals(START_MS - 5 * HOUR_MS, clock.toLocalMillis(START_MS));
+    }
+
+    @Test
+    public void fieldsOfLocalTime() {
+        long localMs = 13 * HOUR_MS + 42 * MINUTE_MS + 7001;
+
+        assertEquals(1, FastClock.getHour12(localMs));
+        assertEquals(42, FastClock.getMinute(localMs));
+        assertEquals(7, FastClock.getSecond(localMs));
+        assertEquals(42 * MINUTE_MS + 7001, FastClock.getMillisIntoHour(localMs));
+
+        // Before the epoch
+        assertEquals(11, FastClock.getHour12(-1));
+        assertEquals(59, FastClock.getMinute(-1));
+        assertEquals(59, FastClock.getSecond(-1));
+    }
+
+    private static void assertMatchesCalendar(TimeZone zone, long fromMs, long toMs, long stepMs) {
+        FastClock clock = new FastClock(zone);
+        Calendar calendar = new GregorianCalendar(zone);
+        for (long timeMs = fromMs; stepMs > 0 ? timeMs < toMs : timeMs > toMs; timeMs += stepMs) {
+            calendar.setTimeInMillis(timeMs);
+            long localMs = clock.toLocalMillis(timeMs);
+
+            String at = "at " + timeMs;
+            assertEquals(at, calendar.get(Calendar.HOUR), FastClock.getHour12(localMs));
+            assertEquals(at, calendar.get(Calendar.MINUTE), FastClock.getMinute(localMs));
+            assertEquals(at, calendar.get(Calendar.SECOND), FastClock.getSecond(localMs));
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.tbirkas.efflux.dial;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+public class FrameFingerprintTest {
+
+    private static final long HOUR_MS = TimeUnit.HOURS.toMillis(1);
+    private static final long SECOND_MS = TimeUnit.SECONDS.toMillis(1);
+
+    private FramePlanner mPlanner;
+
+    @Before
+    public void setUp() {
+        mPlanner = new FramePlanner();
+        mPlanner.setTimeZone(TimeZone.getTimeZone("UTC"));
+        mPlanner.setSurfaceSize(320, 320);
+    }
+
+    @Test
+    public void sameFrameSameFingerprint() {
+        long timeMs = 3 * HOUR_MS + 20 * 60 * SECOND_MS;
+        long first = fingerprint(timeMs, FramePlan.MODE_INTERACTIVE, 0, 7);
+
+        // Within the same second the circle doesn't grow
+        assertEquals(first, fingerprint(timeMs + 500, FramePlan.MODE_INTERACTIVE, 0, 7));
+    }
+
+    @Test
+    public void subpixelGrowthIsTheSameFrame() {
+        // 160 px in an hour, a quarter pixel every 5.6 s
+        mPlanner.setSmoothSweep(true);
+        long timeMs = 5 * HOUR_MS;
+        assertEquals(fingerprint(timeMs, FramePlan.MODE_INTERACTIVE, 0, 0),
+                fingerprint(timeMs + 1000, FramePlan.MODE_INTERACTIVE, 0, 0));
+        assertNotEquals(fingerprint(timeMs, FramePlan.MODE_INTERACTIVE, 0, 0),
+                fingerprint(timeMs + 6 * SECOND_MS, FramePlan.MODE_INTERACTIVE, 0, 0));
+    }
+
+    @Test
+    public void everyPartTellsFramesApart() {
+        long timeMs = 3 * HOUR_MS + 20 * 60 * SECOND_MS;
+        long base = fingerprint(timeMs, FramePlan.MODE_INTERACTIVE, 0, 7);
+
+        assertNotEquals(base, fingerprint(timeMs + 30 * SECOND_MS, FramePlan.MODE_INTERACTIVE,
+                0, 7));
+        assertNotEquals(base, fingerprint(timeMs + HOUR_MS, FramePlan.MODE_INTERACTIVE, 0, 7));
+        assertNotEquals(base, fingerprint(timeMs, FramePlan.MODE_AMBIENT, 0, 7));
+        assertNotEquals(base, fingerprint(timeMs, FramePlan.MODE_INTERACTIVE, 1, 7));
+        assertNotEquals(base, fingerprint(timeMs, FramePlan.MODE_INTERACTIVE, 0, 8));
+        assertNotEquals(FrameFingerprint.NONE, base);
+    }
+
+    private long fingerprint(long timeMs, int mode, int burnInPosition, int version) {
+        return FrameFingerprint.of(mPlanner.plan(timeMs, mode), burnInPosition, version);
+    }
+}
@@ -0,0 +1,121 @@
+package com.tbirkas.efflux.dial;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class FramePlannerTest {
+
+    private static final long HOUR_MS = TimeUnit.HOURS.toMillis(1);
+    private static final float DELTA = 1e-3f;
+
+    private FramePlanner mPlanner;
+
+    @Before
+    public void setUp() {
+        mPlanner = new FramePlanner();
+        mPlanner.setTimeZone(TimeZone.getTimeZone("UTC"));
+        mPlanner.setSurfaceSize(360, 360);
+    }
+
+    @Test
+    public void circleGrowsToTheEdgeDuringTheHour() {
+        assertEquals(0f, mPlanner.plan(0, FramePlan.MODE_INTERACTIVE).getCircleRadius(), DELTA);
+        assertEquals(90f, mPlanner.plan(HOUR_MS / 2, FramePlan.MODE_INTERACTIVE)
+                .getCircleRadius(), DELTA);
+        assertEquals(180f * 3599 / 3600, mPlanner.plan(HOUR_MS - 1, FramePlan.MODE_INTERACTIVE)
+                .getCircleRadius(), DELTA);
+    }
+
+    @Test
+    public void smoothSweepGrowsWithTheMilliseconds() {
+        mPlanner.setSmoothSweep(true);
+
+        assertEquals(90f + 0.025f, mPlanner.plan(HOUR_MS / 2 + 500, FramePlan.MODE_INTERACTIVE)
+                .getCircleRadius(), DELTA);
+    }
+
+    @Test
+    public void passedHoursAreLitAndTheRestIsBlack() {
+        for (int hour = 0; hour < 24; ++hour) {
+            FramePlan plan = mPlanner.plan(hour * HOUR_MS + 1, FramePlan.MODE_INTERACTIVE);
+            int dialHour = hour % 12;
+
+            assertEquals(dialHour, plan.getHour());
+            assertEquals(dialHour, plan.getLitWedgeCount());
+            assertEquals(11 - dialHour, plan.getBlackWedgeCount());
+            for (int i = 0; i < plan.getLitWedgeCount(); ++i) {
+                assertEquals(30f * (i + 7), plan.getLitWedgeAngles()[i], DELTA);
+            }
+            for (int i = 0; i < plan.getBlackWedgeCount(); ++i) {
+                assertEquals(30f * (dialHour + i + 8), plan.getBlackWedgeAngles()[i], DELTA);
+            }
+        }
+    }
+
+    @Test
+    public void usesTheLocalTime() {
+        mPlanner.setTimeZone(TimeZone.getTimeZone("GMT+05:30"));
+
+        FramePlan plan = mPlanner.plan(0, FramePlan.MODE_AMBIENT);
+
+        assertEquals(5, plan.getHour());
+        assertEquals(90f, plan.getCircleRadius(), DELTA);
+        assertEquals(FramePlan.MODE_AMBIENT, plan.getMode());
+    }
+
+    @Test
+    public void wedgeSpansFromTheCenterToTheBottomEdge() {
+        float[] vertices = mPlanner.getPlan().getWedgeVertices();
+
+        assertEquals(180f, vertices[0], DELTA);
+        assertEquals(180f, vertices[1], DELTA);
+        assertEquals(150f, vertices[2], DELTA);
+        assertEquals(360f, vertices[3], DELTA);
+        assertEquals(210f, vertices[4], DELTA);
+        assertEquals(360f, vertices[5], DELTA);
+    }
+
+    @Test
+    public void preRotatesTheHourWedgesAndSeparators() {
+        FramePlan plan = mPlanner.getPlan();
+        float[] wedge = plan.getWedgeVertices();
+        float[] hours = plan.getHourWedgeVertices();
+        float[] separators = plan.getSeparatorVertices();
+
+        // Position 5 is rotated a full turn
+        for (int i = 0; i < wedge.length; ++i) {
+            assertEquals(wedge[i], hours[5 * 6 + i], DELTA);
+        }
+
+        // Position 2 is rotated clockwise by 270 degrees, so the wedge points right
+        assertEquals(180f, hours[2 * 6], DELTA);
+        assertEquals(360f, hours[2 * 6 + 2], DELTA);
+        assertEquals(210f, hours[2 * 6 + 3], DELTA);
+
+        // Separator 5 is rotated by 15 degrees, its tip stays in the center
+        assertEquals(180f, separators[5 * 6], DELTA);
+        assertEquals(180f, separators[5 * 6 + 1], DELTA);
+        assertEquals(180f - 180f * (float) Math.sin(Math.toRadians(15)) - 30f
+                * (float) Math.cos(Math.toRadians(15)), separators[5 * 6 + 2], DELTA);
+    }
+
+    @Test
+    public void reusesThePlan() {
+        assertSame(mPlanner.plan(0, FramePlan.MODE_INTERACTIVE),
+                mPlanner.plan(HOUR_MS, FramePlan.MODE_INTERACTIVE));
+    }
+
+    @Test
+    public void nextChangeIsTheNextWholePixelOrTheNextHour() {
+        // 180 px radius grows a pixel every 20 s
+        assertEquals(20000, mPlanner.nextChangeDelayMs(0));
+        assertEquals(19500, mPlanner.nextChangeDelayMs(500));
+        assertEquals(500, mPlanner.nextChangeDelayMs(HOUR_MS - 500));
+    }
+}
@@ -0,0 +1,107 @@
+package com.tbirkas.efflux.dial;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+public class FrameRateGovernorTest {
+
+    private static final long CHEAP_DRAW_NS = TimeUnit.MICROSECONDS.toNanos(500);
+    private static final long SLOW_DRAW_NS = TimeUnit.MILLISECONDS.toNanos(40);
+
+    private FrameRateGovernor mGovernor;
+    private long mFrameTimeNs;
+
+    @Before
+    public void setUp() {
+        mGovernor = new FrameRateGovernor();
+        mFrameTimeNs = TimeUnit.SECONDS.toNanos(100);
+    }
+
+    @Test
+    public void startsAtSixtyFps() {
+        assertEquals(60, mGovernor.getFrameRateHz());
+        assertEquals(0, mGovernor.getNextFrameDelayMs());
+    }
+
+    @Test
+    public void keepsTheRateWhenFramesAreCheap() {
+        runFrames(600, CHEAP_DRAW_NS, 1, true);
+
+        assertEquals(60, mGovernor.getFrameRateHz());
+    }
+
+    @Test
+    public void stepsDownWhenDrawingOverruns() {
+        runFrames(3, SLOW_DRAW_NS, 1, true);
+        assertEquals(30, mGovernor.getFrameRateHz());
+
+        runFrames(3, SLOW_DRAW_NS, 1, true);
+        assertEquals(15, mGovernor.getFrameRateHz());
+
+        runFrames(3, SLOW_DRAW_NS, 1, true);
+        assertEquals(1, mGovernor.getFrameRateHz());
+        assertEquals(983, mGovernor.getNextFrameDelayMs());
+    }
+
+    @Test
+    public void stepsDownWhenFramesArriveLate() {
+        // Every other vsync is missed
+        runFrames(4, CHEAP_DRAW_NS, 2, true);
+
+        assertEquals(30, mGovernor.getFrameRateHz());
+    }
+
+    @Test
+    public void stepsBackUpAfterCheapFrames() {
+        runFrames(3, SLOW_DRAW_NS, 1, true);
+        assertEquals(30, mGovernor.getFrameRateHz());
+
+        runFrames(200, CHEAP_DRAW_NS, 1, true);
+
+        assertEquals(60, mGovernor.getFrameRateHz());
+    }
+
+    @Test
+    public void pauseIsNotALateFrame() {
+        runFrames(10, CHEAP_DRAW_NS, 1, true);
+        mGovernor.reset();
+        mFrameTimeNs += TimeUnit.SECONDS.toNanos(10);
+
+        runFrames(10, CHEAP_DRAW_NS, 1, true);
+
+        assertEquals(60, mGovernor.getFrameRateHz());
+    }
+
+    @Test
+    public void stepsDownWhenFramesChangeNothing() {
+        runFrames(3, CHEAP_DRAW_NS, 1, false);
+        assertEquals(30, mGovernor.getFrameRateHz());
+
+        runFrames(6, CHEAP_DRAW_NS, 1, false);
+        assertEquals(1, mGovernor.getFrameRateHz());
+    }
+
+    @Test
+    public void staysDownWhileFewFramesChange() {
+        runFrames(9, CHEAP_DRAW_NS, 1, false);
+
+        // The circle grows by a step every few seconds
+        for (int i = 0; i < 20; ++i) {
+            runFrames(1, CHEAP_DRAW_NS, 1, true);
+            runFrames(4, CHEAP_DRAW_NS, 1, false);
+        }
+
+        assertEquals(1, mGovernor.getFrameRateHz());
+    }
+
+    private void runFrames(int count, long drawNs, int vsyncsPerFrame, boolean changed) {
+        for (int i = 0; i < count; ++i) {
+            mFrameTimeNs += mGovernor.getFrameIntervalNs() * vsyncsPerFrame;
+            mGovernor.onFrame(mFrameTimeNs, drawNs, changed);
+        }
+    }
+}
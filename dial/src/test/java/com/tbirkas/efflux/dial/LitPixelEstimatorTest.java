@@ -0,0 +1,95 @@
+package com.tbirkas.efflux.dial;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LitPixelEstimatorTest {
+
+    private static final long HOUR_MS = TimeUnit.HOURS.toMillis(1);
+    private static final float DELTA = 1e-4f;
+
+    private FramePlanner mPlanner;
+    private LitPixelEstimator mEstimator;
+
+    @Before
+    public void setUp() {
+        mPlanner = new FramePlanner();
+        mPlanner.setTimeZone(TimeZone.getTimeZone("UTC"));
+        mPlanner.setSurfaceSize(320, 320);
+        mEstimator = new LitPixelEstimator();
+        mEstimator.setSurface(mPlanner.getPlan());
+    }
+
+    @Test
+    public void blackFrameIsNotLit() {
+        FramePlan plan = mPlanner.plan(5 * HOUR_MS + HOUR_MS / 2, FramePlan.MODE_INTERACTIVE);
+        assertEquals(0, mEstimator.estimate(plan, LitPixelEstimator.LEVEL_FULL, 0, 0), DELTA);
+    }
+
+    @Test
+    public void moreHoursLightMoreOfTheDial() {
+        float previous = -1;
+        for (int hour = 0; hour < 12; ++hour) {
+            FramePlan plan = mPlanner.plan(hour * HOUR_MS, FramePlan.MODE_INTERACTIVE);
+            float ratio = mEstimator.estimate(plan, LitPixelEstimator.LEVEL_FULL, 0, 1);
+            assertTrue("hour " + hour, ratio > previous);
+            previous = ratio;
+        }
+        assertTrue(previous < 1);
+    }
+
+    @Test
+    public void circleLightsTheOpenHour() {
+        int level = LitPixelEstimator.LEVEL_BLACK_BACKGROUND;
+        FramePlan start = mPlanner.plan(3 * HOUR_MS, FramePlan.MODE_INTERACTIVE);
+        float atStart = mEstimator.estimate(start, level, 1, 1);
+        FramePlan end = mPlanner.plan(4 * HOUR_MS - 1, FramePlan.MODE_INTERACTIVE);
+        float atEnd = mEstimator.estimate(end, level, 1, 1);
+
+        // The open wedge is about a 12th of the area inside the dial
+        assertTrue(atEnd - atStart > 0.02f);
+    }
+
+    @Test
+    public void everyLevelLightsLess() {
+        FramePlan plan = mPlanner.plan(8 * HOUR_MS + HOUR_MS / 2, FramePlan.MODE_INTERACTIVE);
+        float previous = Float.MAX_VALUE;
+        for (int level = LitPixelEstimator.LEVEL_FULL; level <= LitPixelEstimator.LEVEL_OUTLINE;
+             ++level) {
+            float ratio = mEstimator.estimate(plan, level, 0.4f, 0.8f);
+            assertTrue("level " + level, ratio < previous);
+            previous = ratio;
+        }
+    }
+
+    @Test
+    public void selectsTheFirstLevelWithinTheBudget() {
+        FramePlan plan = mPlanner.plan(8 * HOUR_MS + HOUR_MS / 2, FramePlan.MODE_INTERACTIVE);
+        float dimmed = mEstimator.estimate(plan, LitPixelEstimator.LEVEL_DIMMED, 0.4f, 0.8f);
+
+        assertEquals(LitPixelEstimator.LEVEL_FULL, mEstimator.selectLevel(plan, 1, 0.4f, 0.8f,
+                LitPixelEstimator.ALLOW_ALL_LEVELS));
+        assertEquals(LitPixelEstimator.LEVEL_DIMMED, mEstimator.selectLevel(plan, dimmed, 0.4f,
+                0.8f, LitPixelEstimator.ALLOW_ALL_LEVELS));
+        assertEquals(dimmed, mEstimator.getLastRatio(), DELTA);
+
+        // Nothing is within the budget, the last allowed level is the best there is
+        int fullOrOutline = (1 << LitPixelEstimator.LEVEL_FULL)
+                | (1 << LitPixelEstimator.LEVEL_OUTLINE);
+        assertEquals(LitPixelEstimator.LEVEL_OUTLINE, mEstimator.selectLevel(plan, 0, 0.4f, 0.8f,
+                fullOrOutline));
+    }
+
+    @Test
+    public void lumaOfColors() {
+        assertEquals(0, LitPixelEstimator.luma(0xFF000000), DELTA);
+        assertEquals(1, LitPixelEstimator.luma(0xFFFFFFFF), DELTA);
+        assertEquals(0.7152f, LitPixelEstimator.luma(0xFF00FF00), DELTA);
+    }
+}
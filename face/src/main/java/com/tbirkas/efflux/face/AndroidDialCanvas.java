@@ -0,0 +1,121 @@
+package com.tbirkas.efflux.face;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.RectF;
+
+import com.tbirkas.efflux.dial.DialCanvas;
+import com.tbirkas.efflux.dial.DialPainter;
+import com.tbirkas.efflux.dial.FramePlan;
+import com.tbirkas.efflux.dial.PaintSpec;
+
+/**
+ * Draws the {@link DialPainter} on an Android {@link Canvas}, with the paints of a
+ * {@link PaintBundle} and the wedge paths of one surface size. The canvas it draws on can be
+ * swapped between frames and cached layers.
+ *
+ * <p>Not thread safe, use one per thread like the painter.
+ */
+public class AndroidDialCanvas implements DialCanvas {
+
+    private final WedgePathCache mWedgePaths = new WedgePathCache();
+
+    // Bounds of the arcs
+    private final RectF mBounds = new RectF();
+
+    private Canvas mCanvas;
+    private PaintBundle mPaints;
+    private Bitmap mBackground;
+
+    /**
+     * Rebuilds the wedge paths from the surface dependent part of the plan, after
+     * {@code FramePlanner.setSurfaceSize}.
+     */
+    public void setSurface(FramePlan plan) {
+        mWedgePaths.update(plan);
+    }
+
+    public void setCanvas(Canvas canvas) {
+        mCanvas = canvas;
+    }
+
+    public Canvas getCanvas() {
+        return mCanvas;
+    }
+
+    /**
+     * Sets the paints the specs of the painter are drawn with, compiled from the palette it
+     * draws with.
+     */
+    public void setPaints(PaintBundle paints) {
+        mPaints = paints;
+    }
+
+    /**
+     * Sets the background photo, scaled to the surface, see {@link BackgroundScale}.
+     */
+    public void setBackground(Bitmap background) {
+        mBackground = background;
+    }
+
+    @Override
+    public void drawBackground(PaintSpec spec) {
+        mCanvas.drawBitmap(mBackground, 0, 0, mPaints.get(spec));
+    }
+
+    @Override
+    public void drawColor(int color) {
+        mCanvas.drawColor(color);
+    }
+
+    @Override
+    public void drawCircle(float centerX, float centerY, float radius, PaintSpec spec) {
+        mCanvas.drawCircle(centerX, centerY, radius, mPaints.get(spec));
+    }
+
+    @Override
+    public void drawWedges(int set, PaintSpec spec) {
+        mCanvas.drawPath(mWedgePaths.getPath(set), mPaints.get(spec));
+    }
+
+    @Override
+    public void drawArc(float left, float top, float right, float bottom, float startAngle,
+                        float sweepAngle, PaintSpec spec) {
+        mBounds.set(left, top, right, bottom);
+        mCanvas.drawArc(mBounds, startAngle, sweepAngle, false, mPaints.get(spec));
+    }
+
+    @Override
+    public void drawText(String text, float centerX, float centerY, PaintSpec spec) {
+        // Centered on the middle of the digits
+        Paint paint = mPaints.get(spec);
+        float baseline = centerY - (paint.ascent() + paint.descent()) / 2;
+        mCanvas.drawText(text, centerX, baseline, paint);
+    }
+
+    @Override
+    public void save() {
+        mCanvas.save();
+    }
+
+    @Override
+    public void restore() {
+        mCanvas.restore();
+    }
+
+    @Override
+    public void rotate(float degrees, float pivotX, float pivotY) {
+        mCanvas.rotate(degrees, pivotX, pivotY);
+    }
+
+    @Override
+    public void translate(float dx, float dy) {
+        mCanvas.translate(dx, dy);
+    }
+
+    @Override
+    public void scale(float scaleX, float scaleY) {
+        mCanvas.scale(scaleX, scaleY);
+    }
+}
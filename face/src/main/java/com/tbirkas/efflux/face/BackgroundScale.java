@@ -0,0 +1,48 @@
+package com.tbirkas.efflux.face;
+
+import android.content.res.Resources;
+import android.graphics.BitmapFactory;
+
+/**
+ * How the dial background fits a surface: scaled to the surface width, keeping its aspect ratio,
+ * and drawn from the top left by {@link AndroidDialCanvas#drawBackground}, so a surface shorter
+ * than the image cuts it at the bottom. The watch face and the previews of the companion app both
+ * decode it this way, so the previews show the background as the watch does.
+ */
+public final class BackgroundScale {
+
+    private BackgroundScale() {
+    }
+
+    /**
+     * Returns the options that decode the drawable resource scaled to {@code width}. The image is
+     * subsampled by the largest power of two that keeps it at least as wide as the surface, and
+     * the decoder scales the rest of the way. The {@code out...} fields hold the size of the
+     * resource.
+     */
+    public static BitmapFactory.Options forWidth(Resources resources, int resId, int width) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeResource(resources, resId, options);
+
+        int sampleSize = 1;
+        while (options.outWidth / (sampleSize * 2) >= width) {
+            sampleSize *= 2;
+        }
+
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = sampleSize;
+        options.inScaled = true;
+        options.inDensity = options.outWidth / sampleSize;
+        options.inTargetDensity = width;
+        return options;
+    }
+
+    /**
+     * Returns the height of the image decoded with the options of
+     * {@link #forWidth(Resources, int, int)}.
+     */
+    public static int scaledHeight(BitmapFactory.Options options, int width) {
+        return Math.round((float) options.outHeight * width / options.outWidth);
+    }
+}
@@ -0,0 +1,83 @@
+package com.tbirkas.efflux.face;
+
+import android.graphics.DashPathEffect;
+import android.graphics.Paint;
+
+import com.tbirkas.efflux.dial.DialPalette;
+import com.tbirkas.efflux.dial.PaintSpec;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * The {@link DialPalette} of a {@link Theme} with every spec compiled into the {@link Paint} the
+ * watch face draws with. The paints are never changed after compiling; a theme change compiles a
+ * new bundle and the engine swaps its reference, so frames never see half applied themes and no
+ * paint is reconfigured per frame.
+ */
+public final class PaintBundle {
+
+    public final Theme theme;
+
+    /** The specs the frames are drawn with, see {@link #get(PaintSpec)}. */
+    public final DialPalette palette;
+
+    private final Map<PaintSpec, Paint> mPaints = new IdentityHashMap<>();
+
+    private PaintBundle(Theme theme) {
+        this.theme = theme;
+        palette = DialPalette.compile(theme.accentColor, theme.ringColor, theme.separatorColor,
+                theme.ambientColor, theme.ringStyle);
+        for (PaintSpec spec : palette.getSpecs()) {
+            mPaints.put(spec, createPaint(spec));
+        }
+    }
+
+    public static PaintBundle compile(Theme theme) {
+        return new PaintBundle(theme);
+    }
+
+    /**
+     * Returns the paint of a spec of {@link #palette}.
+     */
+    public Paint get(PaintSpec spec) {
+        return mPaints.get(spec);
+    }
+
+    private static Paint createPaint(PaintSpec spec) {
+        Paint paint = new Paint();
+        paint.setColor(spec.color);
+        paint.setStrokeWidth(spec.strokeWidth);
+        paint.setAntiAlias(spec.antiAlias);
+        paint.setFilterBitmap(spec.filterBitmap);
+        switch (spec.style) {
+            case PaintSpec.STYLE_FILL_AND_STROKE:
+                paint.setStyle(Paint.Style.FILL_AND_STROKE);
+                break;
+            case PaintSpec.STYLE_STROKE:
+                paint.setStyle(Paint.Style.STROKE);
+                break;
+            default:
+                paint.setStyle(Paint.Style.FILL);
+                break;
+        }
+        if (spec.roundCap) {
+            paint.setStrokeCap(Paint.Cap.ROUND);
+        }
+        if (spec.roundJoin) {
+            paint.setStrokeJoin(Paint.Join.ROUND);
+        }
+        float[] dashIntervals = spec.getDashIntervals();
+        if (dashIntervals != null) {
+            paint.setPathEffect(new DashPathEffect(dashIntervals, spec.dashPhase));
+        }
+        if (spec.shadowRadius > 0) {
+            paint.setShadowLayer(spec.shadowRadius, 0, 0, spec.shadowColor);
+        }
+        if (spec.textSize > 0) {
+            paint.setTextSize(spec.textSize);
+            paint.setTextAlign(Paint.Align.CENTER);
+        }
+        return paint;
+    }
+}
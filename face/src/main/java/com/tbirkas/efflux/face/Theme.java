@@ -0,0 +1,133 @@
+package com.tbirkas.efflux.face;
+
+import com.google.android.gms.wearable.DataMap;
+import com.tbirkas.efflux.dial.DialPalette;
+
+/**
+ * The colors and styles of the watch face, as synced through the config DataItem. Themes are
+ * immutable; the engine compiles each one into a {@link PaintBundle} once.
+ *
+ * <p>The format is versioned with {@link #KEY_VERSION}. Newer versions may only add keys, so a
+ * theme written by a newer app is read with the keys this version knows. Config items without a
+ * version only carry the legacy {@code time_color}, which becomes the accent color.
+ */
+public final class Theme {
+
+    /** Version of the format written by {@link #putTo(DataMap)}. */
+    public static final int FORMAT_VERSION = 1;
+
+    /** Path of the config DataItem the watch face listens on, written by both config apps. */
+    public static final String CONFIG_PATH = "/watch_face_config_efflux";
+
+    public static final String KEY_VERSION = "theme_version";
+    public static final String KEY_ACCENT_COLOR = "accent_color";
+    public static final String KEY_RING_COLOR = "ring_color";
+    public static final String KEY_SEPARATOR_COLOR = "separator_color";
+    public static final String KEY_AMBIENT_COLOR = "ambient_color";
+    public static final String KEY_RING_STYLE = "ring_style";
+
+    /** Accent color of the hours and the growing circle before theme versions existed. */
+    public static final String KEY_LEGACY_TIME_COLOR = "time_color";
+
+    /**
+     * Whether the circle grows continuously instead of once a second, a boolean. Not part of
+     * the theme, the config apps write it to the same DataItem.
+     */
+    public static final String KEY_SMOOTH_SWEEP = "smooth_sweep";
+
+    /**
+     * Highest lit pixel ratio of a frame, a float from 0 to 1, see
+     * {@link com.tbirkas.efflux.dial.LitPixelEstimator}. Not part of the theme either.
+     */
+    public static final String KEY_LIT_BUDGET = "lit_budget";
+
+    /** The 15 and 45 min circles are dashed, the 30 min circle is solid. */
+    public static final int RING_STYLE_DASHED = DialPalette.RING_STYLE_DASHED;
+    /** All three circles are solid. */
+    public static final int RING_STYLE_SOLID = DialPalette.RING_STYLE_SOLID;
+    /** No circles. */
+    public static final int RING_STYLE_NONE = DialPalette.RING_STYLE_NONE;
+
+    public static final Theme DEFAULT = new Theme(DialPalette.DEFAULT_ACCENT_COLOR,
+            DialPalette.DEFAULT_RING_COLOR, DialPalette.DEFAULT_SEPARATOR_COLOR,
+            DialPalette.DEFAULT_AMBIENT_COLOR, RING_STYLE_DASHED);
+
+    public final int accentColor;
+    public final int ringColor;
+    public final int separatorColor;
+    public final int ambientColor;
+    public final int ringStyle;
+
+    public Theme(int accentColor, int ringColor, int separatorColor, int ambientColor,
+                 int ringStyle) {
+        this.accentColor = accentColor;
+        this.ringColor = ringColor;
+        this.separatorColor = separatorColor;
+        this.ambientColor = ambientColor;
+        this.ringStyle = ringStyle;
+    }
+
+    /**
+     * Reads a theme from a config DataMap. Values missing from it are taken from
+     * {@code fallback}.
+     */
+    public static Theme fromDataMap(DataMap dataMap, Theme fallback) {
+        if (!dataMap.containsKey(KEY_VERSION)) {
+            return fallback.withAccentColor(
+                    dataMap.getInt(KEY_LEGACY_TIME_COLOR, fallback.accentColor));
+        }
+        return new Theme(
+                dataMap.getInt(KEY_ACCENT_COLOR, fallback.accentColor),
+                dataMap.getInt(KEY_RING_COLOR, fallback.ringColor),
+                dataMap.getInt(KEY_SEPARATOR_COLOR, fallback.separatorColor),
+                dataMap.getInt(KEY_AMBIENT_COLOR, fallback.ambientColor),
+                dataMap.getInt(KEY_RING_STYLE, fallback.ringStyle));
+    }
+
+    /**
+     * Writes the theme to a config DataMap, including the legacy accent color for watch faces
+     * that don't know about themes yet.
+     */
+    public void putTo(DataMap dataMap) {
+        dataMap.putInt(KEY_VERSION, FORMAT_VERSION);
+        dataMap.putInt(KEY_ACCENT_COLOR, accentColor);
+        dataMap.putInt(KEY_RING_COLOR, ringColor);
+        dataMap.putInt(KEY_SEPARATOR_COLOR, separatorColor);
+        dataMap.putInt(KEY_AMBIENT_COLOR, ambientColor);
+        dataMap.putInt(KEY_RING_STYLE, ringStyle);
+        dataMap.putInt(KEY_LEGACY_TIME_COLOR, accentColor);
+    }
+
+    public Theme withAccentColor(int color) {
+        if (color == accentColor) {
+            return this;
+        }
+        return new Theme(color, ringColor, separatorColor, ambientColor, ringStyle);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Theme)) {
+            return false;
+        }
+        Theme theme = (Theme) o;
+        return accentColor == theme.accentColor
+                && ringColor == theme.ringColor
+                && separatorColor == theme.separatorColor
+                && ambientColor == theme.ambientColor
+                && ringStyle == theme.ringStyle;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = accentColor;
+        result = 31 * result + ringColor;
+        result = 31 * result + separatorColor;
+        result = 31 * result + ambientColor;
+        result = 31 * result + ringStyle;
+        return result;
+    }
+}
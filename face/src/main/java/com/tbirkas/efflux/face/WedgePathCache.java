@@ -0,0 +1,46 @@
+package com.tbirkas.efflux.face;
+
+import android.graphics.Path;
+
+import com.tbirkas.efflux.dial.FramePlan;
+import com.tbirkas.efflux.dial.WedgeSets;
+
+/**
+ * The {@link WedgeSets} as single paths, built once per surface size from the pre-rotated
+ * triangles of the {@link FramePlan}.
+ *
+ * <p>The paths are drawn with {@code drawPath} rather than {@code drawVertices}, as vertices are
+ * never anti-aliased.
+ */
+class WedgePathCache {
+
+    private final Path[] mPaths = new Path[WedgeSets.COUNT];
+
+    WedgePathCache() {
+        for (int i = 0; i < WedgeSets.COUNT; ++i) {
+            mPaths[i] = new Path();
+        }
+    }
+
+    /**
+     * Rebuilds the paths from the surface dependent part of the plan.
+     */
+    void update(FramePlan plan) {
+        for (int set = 0; set < WedgeSets.COUNT; ++set) {
+            Path path = mPaths[set];
+            path.reset();
+            float[] wedges = WedgeSets.getVertices(plan, set);
+            for (int i = WedgeSets.getFirst(set); i < WedgeSets.getEnd(set); ++i) {
+                int offset = i * WedgeSets.VERTICES_PER_WEDGE;
+                path.moveTo(wedges[offset], wedges[offset + 1]);
+                path.lineTo(wedges[offset + 2], wedges[offset + 3]);
+                path.lineTo(wedges[offset + 4], wedges[offset + 5]);
+                path.close();
+            }
+        }
+    }
+
+    Path getPath(int set) {
+        return mPaths[set];
+    }
+}
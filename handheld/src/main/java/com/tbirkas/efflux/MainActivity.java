@@ -1,13 +1,359 @@
 package com.tbirkas.efflux;
 
-import android.support.v7.app.AppCompatActivity;
+import android.app.ActivityManager;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Color;
+import android.net.Uri;
 import android.os.Bundle;
+import android.os.Handler;
+import android.support.v7.app.AppCompatActivity;
+import android.support.v7.widget.GridLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import android.support.v7.widget.SwitchCompat;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.AdapterView;
+import android.widget.CompoundButton;
+import android.widget.ImageView;
+import android.widget.Spinner;
+import android.widget.TextView;
+import android.widget.Toast;
+
+import com.google.android.gms.common.ConnectionResult;
+import com.google.android.gms.common.api.GoogleApiClient;
+import com.google.android.gms.common.api.ResultCallback;
+import com.google.android.gms.wearable.DataApi;
+import com.google.android.gms.wearable.DataItem;
+import com.google.android.gms.wearable.DataItemBuffer;
+import com.google.android.gms.wearable.DataMap;
+import com.google.android.gms.wearable.DataMapItem;
+import com.google.android.gms.wearable.PutDataMapRequest;
+import com.google.android.gms.wearable.PutDataRequest;
+import com.google.android.gms.wearable.Wearable;
+import com.tbirkas.efflux.dial.FastClock;
+import com.tbirkas.efflux.face.Theme;
 
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Companion configuration: a live preview of the face in every palette color at the current
+ * time. Tapping a preview sends its theme to the watch through the same config DataItem as the
+ * config activity on the watch. The settings above the previews go the same way.
+ */
 public class MainActivity extends AppCompatActivity {
 
+    private static final long HOUR_MS = TimeUnit.HOURS.toMillis(1);
+
+    // Part of the app's memory the previews may use
+    private static final int CACHE_MEMORY_DIVISOR = 8;
+
+    // The config DataItem of any node
+    private static final Uri CONFIG_URI = new Uri.Builder()
+            .scheme(PutDataRequest.WEAR_URI_SCHEME)
+            .authority("*")
+            .path(Theme.CONFIG_PATH)
+            .build();
+
+    private GoogleApiClient mGoogleApiClient;
+
+    // The config last read from or sent to the watch. Every DataItem sent holds all of it, as
+    // it replaces the one sent before.
+    private final DataMap mConfig = new DataMap();
+
+    private SwitchCompat mSmoothSweep;
+    private Spinner mLitBudget;
+    private int[] mLitBudgetPercents;
+
+    // Accent color of each preview, on the theme of mConfig
+    private int[] mAccentColors;
+
+    private PreviewCache mPreviewCache;
+    private PreviewRenderer mPreviewRenderer;
+    private PreviewAdapter mAdapter;
+
+    private final FastClock mClock = new FastClock(TimeZone.getDefault());
+    private int mHour;
+
+    // Redraws the previews when the hour of the dial changes
+    private final Handler mHandler = new Handler();
+    private final Runnable mHourChange = new Runnable() {
+        @Override
+        public void run() {
+            updateHour();
+        }
+    };
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_main);
+
+        int memoryClass = ((ActivityManager) getSystemService(Context.ACTIVITY_SERVICE))
+                .getMemoryClass();
+        mPreviewCache = new PreviewCache(memoryClass * 1024 * 1024 / CACHE_MEMORY_DIVISOR);
+        mPreviewRenderer = new PreviewRenderer(getResources(), R.drawable.custom_background);
+
+        String[] colors = getResources().getStringArray(R.array.color_array);
+        String[] colorNames = getResources().getStringArray(R.array.color_name_array);
+        mAccentColors = new int[colors.length];
+        for (int i = 0; i < colors.length; ++i) {
+            mAccentColors[i] = Color.parseColor(colors[i]);
+        }
+        mHour = FastClock.getHour12(mClock.toLocalMillis(System.currentTimeMillis()));
+        mAdapter = new PreviewAdapter(createThemes(), colorNames,
+                getResources().getDimensionPixelSize(R.dimen.preview_size));
+
+        RecyclerView previews = (RecyclerView) findViewById(R.id.previews);
+        previews.setHasFixedSize(true);
+        previews.setLayoutManager(new GridLayoutManager(this,
+                getResources().getInteger(R.integer.preview_columns)));
+        previews.setAdapter(mAdapter);
+
+        mSmoothSweep = (SwitchCompat) findViewById(R.id.smooth_sweep);
+        mSmoothSweep.setOnCheckedChangeListener(new CompoundButton.OnCheckedChangeListener() {
+            @Override
+            public void onCheckedChanged(CompoundButton button, boolean checked) {
+                // Not when showing the config read from the watch
+                if (checked != mConfig.getBoolean(Theme.KEY_SMOOTH_SWEEP, false)) {
+                    DataMap changes = new DataMap();
+                    changes.putBoolean(Theme.KEY_SMOOTH_SWEEP, checked);
+                    sendConfig(changes);
+                }
+            }
+        });
+
+        mLitBudgetPercents = getResources().getIntArray(R.array.lit_budget_percents);
+        mLitBudget = (Spinner) findViewById(R.id.lit_budget);
+        mLitBudget.setOnItemSelectedListener(new AdapterView.OnItemSelectedListener() {
+            @Override
+            public void onItemSelected(AdapterView<?> parent, View view, int position, long id) {
+                float litBudget = mLitBudgetPercents[position] / 100f;
+                if (litBudget != mConfig.getFloat(Theme.KEY_LIT_BUDGET, 1)) {
+                    DataMap changes = new DataMap();
+                    changes.putFloat(Theme.KEY_LIT_BUDGET, litBudget);
+                    sendConfig(changes);
+                }
+            }
+
+            @Override
+            public void onNothingSelected(AdapterView<?> parent) {
+            }
+        });
+
+        mGoogleApiClient = new GoogleApiClient.Builder(this)
+                .addConnectionCallbacks(new GoogleApiClient.ConnectionCallbacks() {
+                    @Override
+                    public void onConnected(Bundle connectionHint) {
+                        readConfig();
+                    }
+                    @Override
+                    public void onConnectionSuspended(int cause) {} })
+                .addOnConnectionFailedListener(new GoogleApiClient.OnConnectionFailedListener() {
+                    @Override
+                    public void onConnectionFailed(ConnectionResult result) {} })
+                .addApi(Wearable.API)
+                .build();
+    }
+
+    @Override
+    protected void onStart() {
+        super.onStart();
+        mGoogleApiClient.connect();
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        mClock.setTimeZone(TimeZone.getDefault());
+        updateHour();
+    }
+
+    @Override
+    protected void onPause() {
+        mHandler.removeCallbacks(mHourChange);
+        super.onPause();
+    }
+
+    @Override
+    protected void onStop() {
+        if (mGoogleApiClient != null && mGoogleApiClient.isConnected()) {
+            mGoogleApiClient.disconnect();
+        }
+        super.onStop();
+    }
+
+    @Override
+    protected void onDestroy() {
+        mPreviewRenderer.shutdown();
+        mPreviewCache.evictAll();
+        super.onDestroy();
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        if (level >= TRIM_MEMORY_UI_HIDDEN) {
+            // Cheap to render again once the previews are visible
+            mPreviewCache.evictAll();
+        }
+    }
+
+    private void updateHour() {
+        long localMs = mClock.toLocalMillis(System.currentTimeMillis());
+        int hour = FastClock.getHour12(localMs);
+        if (hour != mHour) {
+            mHour = hour;
+            mAdapter.notifyDataSetChanged();
+        }
+        mHandler.removeCallbacks(mHourChange);
+        mHandler.postDelayed(mHourChange, HOUR_MS - FastClock.getMillisIntoHour(localMs));
+    }
+
+    /**
+     * Reads the config DataItems of the watch and of this phone into {@link #mConfig} and shows
+     * their settings.
+     */
+    private void readConfig() {
+        Wearable.DataApi.getDataItems(mGoogleApiClient, CONFIG_URI, DataApi.FILTER_LITERAL)
+                .setResultCallback(new ResultCallback<DataItemBuffer>() {
+                    @Override
+                    public void onResult(DataItemBuffer items) {
+                        for (DataItem item : items) {
+                            mConfig.putAll(DataMapItem.fromDataItem(item).getDataMap());
+                        }
+                        items.release();
+                        mAdapter.setThemes(createThemes());
+                        showSettings();
+                    }
+                });
+    }
+
+    /**
+     * Returns the themes offered, the theme of {@link #mConfig} with each of the accent colors.
+     */
+    private Theme[] createThemes() {
+        Theme current = Theme.fromDataMap(mConfig, Theme.DEFAULT);
+        Theme[] themes = new Theme[mAccentColors.length];
+        for (int i = 0; i < mAccentColors.length; ++i) {
+            themes[i] = current.withAccentColor(mAccentColors[i]);
+        }
+        return themes;
+    }
+
+    private void showSettings() {
+        mSmoothSweep.setChecked(mConfig.getBoolean(Theme.KEY_SMOOTH_SWEEP, false));
+
+        int litBudgetPercent = Math.round(mConfig.getFloat(Theme.KEY_LIT_BUDGET, 1) * 100);
+        for (int i = 0; i < mLitBudgetPercents.length; ++i) {
+            if (mLitBudgetPercents[i] == litBudgetPercent) {
+                mLitBudget.setSelection(i);
+            }
+        }
+    }
+
+    // Sends the changes, along with the rest of the config, through Google API
+    private void sendConfig(DataMap changes) {
+        mConfig.putAll(changes);
+        PutDataMapRequest putDataMapReq = PutDataMapRequest.create(Theme.CONFIG_PATH);
+        putDataMapReq.getDataMap().putAll(mConfig);
+        Wearable.DataApi.putDataItem(mGoogleApiClient, putDataMapReq.asPutDataRequest());
+    }
+
+    private void sendTheme(Theme theme) {
+        DataMap changes = new DataMap();
+        theme.putTo(changes);
+        sendConfig(changes);
+        Toast.makeText(this, R.string.theme_sent, Toast.LENGTH_SHORT).show();
+    }
+
+    private class PreviewAdapter extends RecyclerView.Adapter<PreviewHolder> implements
+            PreviewRenderer.Callback {
+        private Theme[] mThemes;
+        private final String[] mNames;
+        private final int mPreviewSize;
+
+        // Keys being rendered, so scrolling back and forth doesn't queue them again
+        private final Set<PreviewKey> mPending = new HashSet<>();
+
+        PreviewAdapter(Theme[] themes, String[] names, int previewSize) {
+            mThemes = themes;
+            mNames = names;
+            mPreviewSize = previewSize;
+        }
+
+        void setThemes(Theme[] themes) {
+            if (!Arrays.equals(themes, mThemes)) {
+                mThemes = themes;
+                notifyDataSetChanged();
+            }
+        }
+
+        @Override
+        public PreviewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
+            return new PreviewHolder(LayoutInflater.from(parent.getContext())
+                    .inflate(R.layout.preview_item, parent, false));
+        }
+
+        @Override
+        public void onBindViewHolder(PreviewHolder holder, int position) {
+            final Theme theme = mThemes[position];
+            holder.mLabel.setText(mNames[position]);
+            holder.itemView.setOnClickListener(new View.OnClickListener() {
+                @Override
+                public void onClick(View v) {
+                    sendTheme(theme);
+                }
+            });
+
+            PreviewKey key = new PreviewKey(theme, mPreviewSize, mHour);
+            Bitmap preview = mPreviewCache.get(key);
+            if (preview != null) {
+                holder.mPreview.setImageBitmap(preview);
+                return;
+            }
+            holder.mPreview.setImageDrawable(null);
+            if (mPending.add(key)) {
+                mPreviewRenderer.render(key, System.currentTimeMillis(), this);
+            }
+        }
+
+        @Override
+        public int getItemCount() {
+            return mThemes.length;
+        }
+
+        @Override // PreviewRenderer.Callback
+        public void onPreviewRendered(PreviewKey key, Bitmap preview) {
+            mPending.remove(key);
+            if (isDestroyed()) {
+                return;
+            }
+            mPreviewCache.put(key, preview);
+            if (key.hour != mHour) {
+                return;
+            }
+            for (int i = 0; i < mThemes.length; ++i) {
+                if (mThemes[i].equals(key.theme)) {
+                    notifyItemChanged(i);
+                }
+            }
+        }
+    }
+
+    private static class PreviewHolder extends RecyclerView.ViewHolder {
+        private final ImageView mPreview;
+        private final TextView mLabel;
+
+        PreviewHolder(View itemView) {
+            super(itemView);
+            mPreview = (ImageView) itemView.findViewById(R.id.preview);
+            mLabel = (TextView) itemView.findViewById(R.id.label);
+        }
     }
 }
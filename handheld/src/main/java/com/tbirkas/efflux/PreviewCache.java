@@ -0,0 +1,19 @@
+package com.tbirkas.efflux;
+
+import android.graphics.Bitmap;
+import android.util.LruCache;
+
+/**
+ * The most recently used previews, limited by their bitmap memory. Only used on the UI thread.
+ */
+class PreviewCache extends LruCache<PreviewKey, Bitmap> {
+
+    PreviewCache(int maxBytes) {
+        super(maxBytes);
+    }
+
+    @Override
+    protected int sizeOf(PreviewKey key, Bitmap preview) {
+        return preview.getByteCount();
+    }
+}
@@ -0,0 +1,40 @@
+package com.tbirkas.efflux;
+
+import com.tbirkas.efflux.face.Theme;
+
+/**
+ * Identifies a rendered preview: the theme, the size in pixels and the hour of the dial. Within
+ * an hour only the circle grows, so a preview is rendered once per hour.
+ */
+final class PreviewKey {
+
+    final Theme theme;
+    final int size;
+    final int hour;
+
+    PreviewKey(Theme theme, int size, int hour) {
+        this.theme = theme;
+        this.size = size;
+        this.hour = hour;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof PreviewKey)) {
+            return false;
+        }
+        PreviewKey key = (PreviewKey) o;
+        return size == key.size && hour == key.hour && theme.equals(key.theme);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = theme.hashCode();
+        result = 31 * result + size;
+        result = 31 * result + hour;
+        return result;
+    }
+}
@@ -0,0 +1,138 @@
+package com.tbirkas.efflux;
+
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.util.SparseArray;
+
+import com.tbirkas.efflux.dial.DialPainter;
+import com.tbirkas.efflux.dial.FramePlan;
+import com.tbirkas.efflux.dial.FramePlanner;
+import com.tbirkas.efflux.face.AndroidDialCanvas;
+import com.tbirkas.efflux.face.BackgroundScale;
+import com.tbirkas.efflux.face.PaintBundle;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Renders face previews on a pool of background threads with the watch face's
+ * {@link DialPainter} and hands them to the UI thread. The planner, the painter and its canvas
+ * hold the state of one surface size, so each thread has its own; the scaled backgrounds are
+ * shared as they are only read once decoded. The background is fit to a preview the same way as
+ * to the watch surface, see {@link BackgroundScale}.
+ */
+class PreviewRenderer {
+
+    interface Callback {
+        /** Called on the UI thread with the rendered preview. */
+        void onPreviewRendered(PreviewKey key, Bitmap preview);
+    }
+
+    // One core is left for the UI thread
+    private static final int THREADS =
+            Math.max(1, Math.min(3, Runtime.getRuntime().availableProcessors() - 1));
+
+    private final Resources mResources;
+    private final int mBackgroundResId;
+
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private final ExecutorService mExecutor = Executors.newFixedThreadPool(THREADS,
+            new ThreadFactory() {
+                @Override
+                public Thread newThread(final Runnable runnable) {
+                    return new Thread(new Runnable() {
+                        @Override
+                        public void run() {
+                            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                            runnable.run();
+                        }
+                    }, "preview");
+                }
+            });
+
+    private final ThreadLocal<Worker> mWorkers = new ThreadLocal<Worker>() {
+        @Override
+        protected Worker initialValue() {
+            return new Worker();
+        }
+    };
+
+    // The background scaled to each preview size, guarded by itself
+    private final SparseArray<Bitmap> mBackgrounds = new SparseArray<>();
+
+    PreviewRenderer(Resources resources, int backgroundResId) {
+        mResources = resources;
+        mBackgroundResId = backgroundResId;
+    }
+
+    /**
+     * Renders the preview of the key for the given time and calls back on the UI thread.
+     */
+    void render(final PreviewKey key, final long timeMs, final Callback callback) {
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final Bitmap preview = mWorkers.get().render(key, timeMs);
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        callback.onPreviewRendered(key, preview);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Stops the threads, previews still being rendered are dropped.
+     */
+    void shutdown() {
+        mExecutor.shutdownNow();
+        mMainHandler.removeCallbacksAndMessages(null);
+    }
+
+    private Bitmap getBackground(int size) {
+        synchronized (mBackgrounds) {
+            Bitmap background = mBackgrounds.get(size);
+            if (background == null) {
+                BitmapFactory.Options options = BackgroundScale.forWidth(mResources,
+                        mBackgroundResId, size);
+                background = BitmapFactory.decodeResource(mResources, mBackgroundResId,
+                        options);
+                mBackgrounds.put(size, background);
+            }
+            return background;
+        }
+    }
+
+    private class Worker {
+        private final FramePlanner mPlanner = new FramePlanner();
+        private final DialPainter mPainter = new DialPainter();
+        private final AndroidDialCanvas mCanvas = new AndroidDialCanvas();
+        private int mSize;
+
+        Bitmap render(PreviewKey key, long timeMs) {
+            if (key.size != mSize) {
+                mSize = key.size;
+                mPlanner.setSurfaceSize(mSize, mSize);
+                mPainter.setSurface(mPlanner.getPlan());
+                mCanvas.setSurface(mPlanner.getPlan());
+                mCanvas.setBackground(getBackground(mSize));
+            }
+
+            PaintBundle paints = PaintBundle.compile(key.theme);
+            Bitmap preview = Bitmap.createBitmap(mSize, mSize, Bitmap.Config.ARGB_8888);
+            mCanvas.setPaints(paints);
+            mCanvas.setCanvas(new Canvas(preview));
+            mPainter.drawFrame(mCanvas, mPlanner.plan(timeMs, FramePlan.MODE_INTERACTIVE),
+                    paints.palette);
+            return preview;
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.tbirkas.efflux.harness;
+
+import com.tbirkas.efflux.dial.FramePlan;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Renders a full simulated day at the common watch resolutions in the interactive, ambient and
+ * low-bit ambient modes and records the render time and the allocated bytes of every frame.
+ *
+ * <p>Usage: {@code DaySweep <report dir> [step in seconds]}. Writes {@code frames.csv} with one
+ * line per frame and {@code summary.txt} with the percentiles per resolution and mode.
+ */
+public class DaySweep {
+
+    static final int[] WIDTHS = {320, 360, 390, 454};
+    static final int[] MODES = {FramePlan.MODE_INTERACTIVE, FramePlan.MODE_AMBIENT,
+            FramePlan.MODE_LOW_BIT_AMBIENT};
+    static final String[] MODE_NAMES = {"interactive", "ambient", "low-bit"};
+
+    private static final long DAY_MS = TimeUnit.DAYS.toMillis(1);
+    private static final long DEFAULT_STEP_MS = TimeUnit.MINUTES.toMillis(1);
+
+    private final com.sun.management.ThreadMXBean mThreads;
+    private final long mThreadId = Thread.currentThread().getId();
+
+    DaySweep() {
+        java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean
+                && ((com.sun.management.ThreadMXBean) threads)
+                .isThreadAllocatedMemorySupported()) {
+            mThreads = (com.sun.management.ThreadMXBean) threads;
+            mThreads.setThreadAllocatedMemoryEnabled(true);
+        } else {
+            // Allocations are reported as -1
+            mThreads = null;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: DaySweep <report dir> [step in seconds]");
+            System.exit(1);
+        }
+        File reportDir = new File(args[0]);
+        long stepMs = args.length > 1
+                ? TimeUnit.SECONDS.toMillis(Long.parseLong(args[1])) : DEFAULT_STEP_MS;
+        if (!reportDir.isDirectory() && !reportDir.mkdirs()) {
+            throw new IOException("Cannot create " + reportDir);
+        }
+
+        new DaySweep().run(reportDir, stepMs);
+    }
+
+    void run(File reportDir, long stepMs) throws IOException {
+        int frames = (int) (DAY_MS / stepMs);
+        long[] renderNs = new long[frames];
+        long[] allocatedBytes = new long[frames];
+
+        PrintWriter csv = new PrintWriter(new FileWriter(new File(reportDir, "frames.csv")));
+        PrintWriter summary = new PrintWriter(new FileWriter(new File(reportDir, "summary.txt")));
+        try {
+            csv.println("width,mode,time_ms,render_ns,allocated_bytes");
+            summary.printf(Locale.US, "%d frames per run, one every %d ms%n%n", frames, stepMs);
+            summary.printf(Locale.US, "%-6s %-12s %10s %10s %10s %10s %12s%n", "width", "mode",
+                    "mean us", "p50 us", "p95 us", "max us", "bytes/frame");
+
+            HeadlessEngine engine = new HeadlessEngine(TimeZone.getTimeZone("UTC"));
+            for (int width : WIDTHS) {
+                for (int m = 0; m < MODES.length; ++m) {
+                    engine.onSurfaceChanged(width, width);
+                    long totalBytes = 0;
+                    for (int i = 0; i < frames; ++i) {
+                        long timeMs = i * stepMs;
+                        long bytesBefore = allocatedBytes();
+                        long start = System.nanoTime();
+                        engine.onDraw(timeMs, MODES[m]);
+                        renderNs[i] = System.nanoTime() - start;
+                        allocatedBytes[i] = mThreads == null ? -1 : allocatedBytes() - bytesBefore;
+                        totalBytes += allocatedBytes[i];
+
+                        csv.printf(Locale.US, "%d,%s,%d,%d,%d%n", width, MODE_NAMES[m], timeMs,
+                                renderNs[i], allocatedBytes[i]);
+                    }
+                    printSummary(summary, width, MODE_NAMES[m], renderNs, totalBytes / frames);
+                }
+            }
+            engine.release();
+        } finally {
+            csv.close();
+            summary.close();
+        }
+    }
+
+    private long allocatedBytes() {
+        return mThreads == null ? 0 : mThreads.getThreadAllocatedBytes(mThreadId);
+    }
+
+    private static void printSummary(PrintWriter summary, int width, String mode,
+                                     long[] renderNs, long bytesPerFrame) {
+        long total = 0;
+        for (long ns : renderNs) {
+            total += ns;
+        }
+        long[] sorted = renderNs.clone();
+        Arrays.sort(sorted);
+        summary.printf(Locale.US, "%-6d %-12s %10.1f %10.1f %10.1f %10.1f %12d%n", width, mode,
+                total / 1000.0 / sorted.length, percentile(sorted, 50) / 1000.0,
+                percentile(sorted, 95) / 1000.0, sorted[sorted.length - 1] / 1000.0,
+                bytesPerFrame);
+    }
+
+    private static long percentile(long[] sorted, int percent) {
+        return sorted[Math.min(sorted.length - 1, sorted.length * percent / 100)];
+    }
+}
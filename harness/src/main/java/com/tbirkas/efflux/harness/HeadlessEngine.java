@@ -0,0 +1,223 @@
+package com.tbirkas.efflux.harness;
+
+import com.tbirkas.efflux.dial.DialCanvas;
+import com.tbirkas.efflux.dial.DialPainter;
+import com.tbirkas.efflux.dial.DialPalette;
+import com.tbirkas.efflux.dial.FramePlan;
+import com.tbirkas.efflux.dial.FramePlanner;
+import com.tbirkas.efflux.dial.LitPixelEstimator;
+import com.tbirkas.efflux.dial.SlotData;
+
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.Collections;
+import java.util.List;
+import java.util.TimeZone;
+
+/**
+ * Runs the watch face's frame composition on the JVM: a {@link FramePlanner} set up the way
+ * {@code RenderThread} sets it up, and the {@link DialPainter} the watch face draws with, drawing
+ * on a {@link Java2DDialCanvas} that stands in for the Android canvas. The lit pixel budget, the
+ * theme and the complication slots select the same specs and layers as on the watch.
+ *
+ * <p>Like the watch face, it caches the static layer and the ambient frames of the hours in
+ * images. Slots are drawn directly, and a gradient stands in for the background photo.
+ */
+public class HeadlessEngine {
+
+    private static final int HOURS = 12;
+
+    private final FramePlanner mPlanner = new FramePlanner();
+    private final DialPainter mPainter = new DialPainter();
+    private final Java2DDialCanvas mCanvas = new Java2DDialCanvas();
+    private final DialPainter.Layers mCachedLayers = new CachedLayers();
+
+    private DialPalette mPalette = DialPalette.compile(DialPalette.DEFAULT_ACCENT_COLOR,
+            DialPalette.DEFAULT_RING_COLOR, DialPalette.DEFAULT_SEPARATOR_COLOR,
+            DialPalette.DEFAULT_AMBIENT_COLOR, DialPalette.RING_STYLE_DASHED);
+    private float mLitBudget = 1;
+    private boolean mBurnInProtection;
+    private List<SlotData> mComplications = Collections.emptyList();
+
+    private BufferedImage mFrame;
+    private Graphics2D mGraphics;
+    private float mBackgroundLuma;
+
+    // The static layer and the specs it was drawn with
+    private BufferedImage mStaticLayer;
+    private DialPalette.ModeSpecs mStaticLayerSpecs;
+
+    // The ambient frames of the hours and what they were drawn with
+    private final BufferedImage[] mAmbientFrames = new BufferedImage[HOURS];
+    private DialPalette.ModeSpecs mAmbientSpecs;
+    private boolean mAmbientOutline;
+
+    public HeadlessEngine(TimeZone zone) {
+        mPlanner.setTimeZone(zone);
+        mCanvas.setPalette(mPalette);
+    }
+
+    /**
+     * Sets the palette of the theme the frames are drawn with, the default theme's until then.
+     */
+    public void setPalette(DialPalette palette) {
+        mPalette = palette;
+        mCanvas.setPalette(palette);
+    }
+
+    /**
+     * Sets the highest lit pixel ratio of a frame, 1 for no limit.
+     */
+    public void setLitBudget(float litBudget) {
+        mLitBudget = litBudget;
+    }
+
+    public void setBurnInProtection(boolean burnInProtection) {
+        mBurnInProtection = burnInProtection;
+    }
+
+    /**
+     * Sets the data of the complication slots, none until then.
+     */
+    public void setComplications(List<SlotData> complications) {
+        mComplications = complications;
+    }
+
+    /**
+     * Sizes the dial for a new surface, dropping every cached layer like the watch face does.
+     */
+    public void onSurfaceChanged(int width, int height) {
+        release();
+        mPlanner.setSurfaceSize(width, height);
+        mPainter.setSurface(mPlanner.getPlan());
+        mCanvas.setSurface(mPlanner.getPlan());
+
+        BufferedImage background = createBackground(width, height);
+        mCanvas.setBackground(background);
+        mBackgroundLuma = meanLuma(background);
+
+        mFrame = mCanvas.createImage();
+        mGraphics = mFrame.createGraphics();
+        mCanvas.setGraphics(mGraphics);
+    }
+
+    /**
+     * Draws the frame for the given time in one of the {@link FramePlan} modes. The returned
+     * image is reused by the next frame.
+     */
+    public BufferedImage onDraw(long timeMs, int mode) {
+        if (mFrame == null) {
+            throw new IllegalStateException("onSurfaceChanged has not been called");
+        }
+        FramePlan plan = mPlanner.plan(timeMs, mode);
+        if (mode == FramePlan.MODE_INTERACTIVE) {
+            mPainter.drawInteractiveFrame(mCanvas, plan, mPalette, mLitBudget, mBackgroundLuma,
+                    false, mBurnInProtection, mCachedLayers);
+        } else {
+            mPainter.drawAmbientFrame(mCanvas, plan, mPalette, mLitBudget, mBurnInProtection,
+                    timeMs, mCachedLayers);
+        }
+        return mFrame;
+    }
+
+    /**
+     * Draws an interactive frame for the given time the way the companion app draws its
+     * previews, without any cached layer, lit pixel budget or slot.
+     */
+    public BufferedImage onDrawPreview(long timeMs) {
+        if (mFrame == null) {
+            throw new IllegalStateException("onSurfaceChanged has not been called");
+        }
+        mPainter.drawFrame(mCanvas, mPlanner.plan(timeMs, FramePlan.MODE_INTERACTIVE), mPalette);
+        return mFrame;
+    }
+
+    public void release() {
+        if (mGraphics != null) {
+            mGraphics.dispose();
+            mGraphics = null;
+        }
+        mFrame = null;
+        mStaticLayer = null;
+        mStaticLayerSpecs = null;
+        releaseAmbientFrames();
+    }
+
+    private void releaseAmbientFrames() {
+        for (int i = 0; i < mAmbientFrames.length; ++i) {
+            mAmbientFrames[i] = null;
+        }
+        mAmbientSpecs = null;
+    }
+
+    // Stands in for the decoded and scaled background photo
+    private static BufferedImage createBackground(int width, int height) {
+        BufferedImage background = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = background.createGraphics();
+        g.setPaint(new GradientPaint(0, 0, new Color(0x3A2A1A), width, height,
+                new Color(0x8A6A4A)));
+        g.fillRect(0, 0, width, height);
+        g.dispose();
+        return background;
+    }
+
+    private static float meanLuma(BufferedImage image) {
+        double sum = 0;
+        for (int y = 0; y < image.getHeight(); ++y) {
+            for (int x = 0; x < image.getWidth(); ++x) {
+                sum += LitPixelEstimator.luma(image.getRGB(x, y));
+            }
+        }
+        return (float) (sum / (image.getWidth() * image.getHeight()));
+    }
+
+    /**
+     * Draws the static layer and the ambient frames from images rendered on first use, and the
+     * slots directly. The painter draws on {@link #mCanvas}.
+     */
+    private class CachedLayers implements DialPainter.Layers {
+        @Override
+        public void drawStaticLayer(DialCanvas canvas, DialPalette.ModeSpecs separatorSpecs,
+                                    DialPalette.ModeSpecs ringSpecs) {
+            if (separatorSpecs != mStaticLayerSpecs) {
+                mStaticLayerSpecs = separatorSpecs;
+                mStaticLayer = mCanvas.createImage();
+                Graphics2D target = mCanvas.getGraphics();
+                Graphics2D layer = mStaticLayer.createGraphics();
+                mCanvas.setGraphics(layer);
+                mPainter.drawStaticLayer(mCanvas, separatorSpecs, ringSpecs);
+                mCanvas.setGraphics(target);
+                layer.dispose();
+            }
+            mCanvas.getGraphics().drawImage(mStaticLayer, 0, 0, null);
+        }
+
+        @Override
+        public void drawSlots(DialCanvas canvas, DialPalette palette) {
+            mPainter.drawSlots(canvas, mComplications, palette);
+        }
+
+        @Override
+        public void drawAmbientHourFrame(DialCanvas canvas, int hour,
+                                         DialPalette.ModeSpecs specs, boolean outline) {
+            if (specs != mAmbientSpecs || outline != mAmbientOutline) {
+                releaseAmbientFrames();
+                mAmbientSpecs = specs;
+                mAmbientOutline = outline;
+            }
+
+            if (mAmbientFrames[hour] == null) {
+                mAmbientFrames[hour] = mCanvas.createImage();
+                Graphics2D target = mCanvas.getGraphics();
+                Graphics2D frame = mAmbientFrames[hour].createGraphics();
+                mCanvas.setGraphics(frame);
+                mPainter.drawAmbientHourFrame(mCanvas, hour, specs, outline);
+                mCanvas.setGraphics(target);
+                frame.dispose();
+            }
+            mCanvas.getGraphics().drawImage(mAmbientFrames[hour], 0, 0, null);
+        }
+    }
+}
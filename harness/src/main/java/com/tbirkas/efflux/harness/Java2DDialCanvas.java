@@ -0,0 +1,243 @@
+package com.tbirkas.efflux.harness;
+
+import com.tbirkas.efflux.dial.DialCanvas;
+import com.tbirkas.efflux.dial.DialPalette;
+import com.tbirkas.efflux.dial.FramePlan;
+import com.tbirkas.efflux.dial.PaintSpec;
+import com.tbirkas.efflux.dial.WedgeSets;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.Shape;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Arc2D;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Path2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Draws the {@link com.tbirkas.efflux.dial.DialPainter} with Java2D, standing in for the Android
+ * canvas of the watch face. The specs of a {@link DialPalette} are compiled into Java2D colors
+ * and strokes once, like the watch face compiles them into its {@code PaintBundle}.
+ *
+ * <p>Android's shadow layer has no Java2D equivalent, it is approximated by a wider translucent
+ * stroke under the shape. Text is drawn with the default sans serif font of the JDK.
+ */
+public class Java2DDialCanvas implements DialCanvas {
+
+    // Alpha of the stroke that stands in for a shadow layer
+    private static final int SHADOW_ALPHA = 0x60;
+
+    /**
+     * A spec compiled for Java2D.
+     */
+    private static final class Java2DPaint {
+        final Color color;
+        final boolean fill;
+        // Null if only filled
+        final BasicStroke stroke;
+        // Null without a shadow
+        final Color shadowColor;
+        final BasicStroke shadowStroke;
+        final Object antiAlias;
+        // Null if it draws no text
+        final Font font;
+
+        Java2DPaint(PaintSpec spec) {
+            color = new Color(spec.color, true);
+            fill = spec.style != PaintSpec.STYLE_STROKE;
+            // Like Skia, a fill with a hairline stroke is only filled
+            if (spec.style == PaintSpec.STYLE_FILL
+                    || (spec.style == PaintSpec.STYLE_FILL_AND_STROKE && spec.strokeWidth == 0)) {
+                stroke = null;
+            } else {
+                int cap = spec.roundCap ? BasicStroke.CAP_ROUND : BasicStroke.CAP_BUTT;
+                int join = spec.roundJoin ? BasicStroke.JOIN_ROUND : BasicStroke.JOIN_MITER;
+                float[] dashIntervals = spec.getDashIntervals();
+                stroke = dashIntervals != null
+                        ? new BasicStroke(spec.strokeWidth, cap, join, 10, dashIntervals,
+                        spec.dashPhase)
+                        : new BasicStroke(spec.strokeWidth, cap, join);
+            }
+            if (spec.shadowRadius > 0) {
+                shadowColor = new Color(spec.shadowColor & 0xFFFFFF | SHADOW_ALPHA << 24, true);
+                shadowStroke = new BasicStroke(spec.strokeWidth + spec.shadowRadius);
+            } else {
+                shadowColor = null;
+                shadowStroke = null;
+            }
+            antiAlias = spec.antiAlias
+                    ? RenderingHints.VALUE_ANTIALIAS_ON : RenderingHints.VALUE_ANTIALIAS_OFF;
+            font = spec.textSize > 0
+                    ? new Font(Font.SANS_SERIF, Font.PLAIN, Math.round(spec.textSize)) : null;
+        }
+    }
+
+    private final Path2D.Float[] mWedgePaths = new Path2D.Float[WedgeSets.COUNT];
+    private final Ellipse2D.Float mCircle = new Ellipse2D.Float();
+    private final Arc2D.Float mArc = new Arc2D.Float(Arc2D.OPEN);
+    private final Deque<AffineTransform> mSavedTransforms = new ArrayDeque<>();
+    private final Map<PaintSpec, Java2DPaint> mPaints = new IdentityHashMap<>();
+    private final AffineTransform mIdentity = new AffineTransform();
+
+    // The color last filled with by drawColor
+    private Color mFillColor = Color.BLACK;
+
+    private int mWidth;
+    private int mHeight;
+    private Graphics2D mGraphics;
+    private BufferedImage mBackground;
+
+    /**
+     * Rebuilds the wedge paths from the surface dependent part of the plan.
+     */
+    public void setSurface(FramePlan plan) {
+        mWidth = plan.getWidth();
+        mHeight = plan.getHeight();
+        for (int set = 0; set < WedgeSets.COUNT; ++set) {
+            Path2D.Float path = new Path2D.Float();
+            float[] wedges = WedgeSets.getVertices(plan, set);
+            for (int i = WedgeSets.getFirst(set); i < WedgeSets.getEnd(set); ++i) {
+                int offset = i * WedgeSets.VERTICES_PER_WEDGE;
+                path.moveTo(wedges[offset], wedges[offset + 1]);
+                path.lineTo(wedges[offset + 2], wedges[offset + 3]);
+                path.lineTo(wedges[offset + 4], wedges[offset + 5]);
+                path.closePath();
+            }
+            mWedgePaths[set] = path;
+        }
+    }
+
+    public void setGraphics(Graphics2D graphics) {
+        mGraphics = graphics;
+        mGraphics.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING,
+                RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+    }
+
+    public Graphics2D getGraphics() {
+        return mGraphics;
+    }
+
+    /**
+     * Compiles the specs of the palette the painter draws with.
+     */
+    public void setPalette(DialPalette palette) {
+        mPaints.clear();
+        for (PaintSpec spec : palette.getSpecs()) {
+            mPaints.put(spec, new Java2DPaint(spec));
+        }
+    }
+
+    /**
+     * Sets the image standing in for the background photo, the size of the surface.
+     */
+    public void setBackground(BufferedImage background) {
+        mBackground = background;
+    }
+
+    @Override
+    public void drawBackground(PaintSpec spec) {
+        mGraphics.drawImage(mBackground, 0, 0, null);
+    }
+
+    @Override
+    public void drawColor(int color) {
+        // Fills the whole surface, whatever the transformation
+        AffineTransform saved = mGraphics.getTransform();
+        mGraphics.setTransform(mIdentity);
+        if (mFillColor.getRGB() != color) {
+            mFillColor = new Color(color, true);
+        }
+        mGraphics.setColor(mFillColor);
+        mGraphics.fillRect(0, 0, mWidth, mHeight);
+        mGraphics.setTransform(saved);
+    }
+
+    @Override
+    public void drawCircle(float centerX, float centerY, float radius, PaintSpec spec) {
+        mCircle.setFrame(centerX - radius, centerY - radius, radius * 2, radius * 2);
+        draw(mCircle, spec);
+    }
+
+    @Override
+    public void drawWedges(int set, PaintSpec spec) {
+        draw(mWedgePaths[set], spec);
+    }
+
+    @Override
+    public void drawArc(float left, float top, float right, float bottom, float startAngle,
+                        float sweepAngle, PaintSpec spec) {
+        // Java2D angles run counterclockwise
+        mArc.setArc(left, top, right - left, bottom - top, -startAngle, -sweepAngle, Arc2D.OPEN);
+        draw(mArc, spec);
+    }
+
+    @Override
+    public void drawText(String text, float centerX, float centerY, PaintSpec spec) {
+        Java2DPaint paint = mPaints.get(spec);
+        mGraphics.setFont(paint.font);
+        mGraphics.setColor(paint.color);
+        FontMetrics metrics = mGraphics.getFontMetrics();
+        // Centered on the middle of the digits
+        float baseline = centerY + (metrics.getAscent() - metrics.getDescent()) / 2f;
+        mGraphics.drawString(text, centerX - metrics.stringWidth(text) / 2f, baseline);
+    }
+
+    @Override
+    public void save() {
+        mSavedTransforms.push(mGraphics.getTransform());
+    }
+
+    @Override
+    public void restore() {
+        mGraphics.setTransform(mSavedTransforms.pop());
+    }
+
+    @Override
+    public void rotate(float degrees, float pivotX, float pivotY) {
+        mGraphics.rotate(Math.toRadians(degrees), pivotX, pivotY);
+    }
+
+    @Override
+    public void translate(float dx, float dy) {
+        mGraphics.translate(dx, dy);
+    }
+
+    @Override
+    public void scale(float scaleX, float scaleY) {
+        mGraphics.scale(scaleX, scaleY);
+    }
+
+    /**
+     * Returns a transparent image the size of the surface, for a frame or a cached layer.
+     */
+    public BufferedImage createImage() {
+        return new BufferedImage(mWidth, mHeight, BufferedImage.TYPE_INT_ARGB_PRE);
+    }
+
+    private void draw(Shape shape, PaintSpec spec) {
+        Java2DPaint paint = mPaints.get(spec);
+        mGraphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, paint.antiAlias);
+        if (paint.shadowColor != null) {
+            mGraphics.setColor(paint.shadowColor);
+            mGraphics.setStroke(paint.shadowStroke);
+            mGraphics.draw(shape);
+        }
+        mGraphics.setColor(paint.color);
+        if (paint.fill) {
+            mGraphics.fill(shape);
+        }
+        if (paint.stroke != null) {
+            mGraphics.setStroke(paint.stroke);
+            mGraphics.draw(shape);
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package com.tbirkas.efflux.harness;
+
+import com.tbirkas.efflux.dial.DialPalette;
+import com.tbirkas.efflux.dial.FramePlan;
+import com.tbirkas.efflux.dial.SlotData;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+import javax.imageio.ImageIO;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compares frames drawn by the watch face's {@code DialPainter} with the golden images in
+ * {@code src/test/resources/golden}: every mode at a few times and widths with the default theme,
+ * and one time with another theme, lit pixel budgets, burn-in protection and slots. Run with
+ * {@code -PupdateGoldens} to rewrite the golden images after an intended visual change. Failing
+ * frames are written to {@code build/reports/golden} next to a diff image.
+ */
+@RunWith(Parameterized.class)
+public class GoldenImageTest {
+
+    private static final int[] WIDTHS = {320, 454};
+    private static final String[] TIMES = {"0215", "0740", "1159"};
+
+    // Drawn at one width and time only, each changes one input of the frames
+    private static final String DEFAULT = "default";
+    private static final String THEME = "theme";
+    // The lit pixel budgets of the black background, dimmed and outline levels at the time
+    private static final String BUDGET_20 = "budget20";
+    private static final String BUDGET_10 = "budget10";
+    private static final String BUDGET_5 = "budget5";
+    private static final String BURN_IN = "burn-in";
+    private static final String SLOTS = "slots";
+    private static final String[] VARIANTS = {THEME, BUDGET_20, BUDGET_10, BUDGET_5, BURN_IN,
+            SLOTS};
+    private static final int VARIANT_WIDTH = 454;
+    private static final String VARIANT_TIME = "0740";
+
+    private static final DialPalette THEME_PALETTE = DialPalette.compile(0xFF4FC3F7,
+            0xFFFF8A65, 0xFF202020, 0xFF9E9E9E, DialPalette.RING_STYLE_SOLID);
+
+    // Java2D anti-aliasing differs a little between JDKs, only count clearly different pixels
+    private static final int CHANNEL_TOLERANCE = 32;
+    private static final double MAX_DIFFERENT_PIXELS = 0.005;
+
+    private final int mWidth;
+    private final int mMode;
+    private final String mTime;
+    private final String mVariant;
+
+    public GoldenImageTest(int width, int mode, String time, String variant) {
+        mWidth = width;
+        mMode = mode;
+        mTime = time;
+        mVariant = variant;
+    }
+
+    @Parameters(name = "{0} mode {1} at {2} {3}")
+    public static Collection<Object[]> parameters() {
+        Collection<Object[]> parameters = new ArrayList<>();
+        for (int width : WIDTHS) {
+            for (int mode : DaySweep.MODES) {
+                for (String time : TIMES) {
+                    parameters.add(new Object[]{width, mode, time, DEFAULT});
+                }
+            }
+        }
+        for (String variant : VARIANTS) {
+            for (int mode : DaySweep.MODES) {
+                // Slots are only drawn in interactive mode
+                if (!SLOTS.equals(variant) || mode == FramePlan.MODE_INTERACTIVE) {
+                    parameters.add(new Object[]{VARIANT_WIDTH, mode, VARIANT_TIME, variant});
+                }
+            }
+        }
+        return parameters;
+    }
+
+    @Test
+    public void matchesGoldenImage() throws IOException {
+        long timeMs = TimeUnit.HOURS.toMillis(Integer.parseInt(mTime.substring(0, 2)))
+                + TimeUnit.MINUTES.toMillis(Integer.parseInt(mTime.substring(2)));
+        HeadlessEngine engine = new HeadlessEngine(TimeZone.getTimeZone("UTC"));
+        BufferedImage actual;
+        try {
+            configure(engine, mVariant);
+            engine.onSurfaceChanged(mWidth, mWidth);
+            actual = engine.onDraw(timeMs, mMode);
+        } finally {
+            engine.release();
+        }
+
+        String name = mWidth + "_" + DaySweep.MODE_NAMES[mMode] + "_" + mTime
+                + (DEFAULT.equals(mVariant) ? "" : "_" + mVariant) + ".png";
+        if (Boolean.getBoolean("efflux.updateGoldens")) {
+            ImageIO.write(actual, "png", new File(System.getProperty("efflux.goldenDir"), name));
+            return;
+        }
+
+        BufferedImage expected;
+        InputStream in = getClass().getResourceAsStream("/golden/" + name);
+        assertNotNull("No golden image " + name + ", run with -PupdateGoldens", in);
+        try {
+            expected = ImageIO.read(in);
+        } finally {
+            in.close();
+        }
+
+        BufferedImage diff = new BufferedImage(mWidth, mWidth, BufferedImage.TYPE_INT_RGB);
+        double different = compare(expected, actual, diff);
+        if (different > MAX_DIFFERENT_PIXELS) {
+            File reportDir = new File(System.getProperty("efflux.reportDir",
+                    "build/reports/golden"));
+            reportDir.mkdirs();
+            ImageIO.write(actual, "png", new File(reportDir, name));
+            ImageIO.write(diff, "png", new File(reportDir, "diff_" + name));
+        }
+        assertTrue(String.format("%s differs in %.2f%% of the pixels", name, different * 100),
+                different <= MAX_DIFFERENT_PIXELS);
+    }
+
+    private static void configure(HeadlessEngine engine, String variant) {
+        switch (variant) {
+            case THEME:
+                engine.setPalette(THEME_PALETTE);
+                break;
+            case BUDGET_20:
+                engine.setLitBudget(0.2f);
+                break;
+            case BUDGET_10:
+                engine.setLitBudget(0.1f);
+                break;
+            case BUDGET_5:
+                engine.setLitBudget(0.05f);
+                break;
+            case BURN_IN:
+                engine.setBurnInProtection(true);
+                break;
+            case SLOTS:
+                engine.setComplications(Arrays.asList(new SlotData("87%", 0.87f),
+                        new SlotData("6204", SlotData.NO_LEVEL), new SlotData("12%", 0.12f)));
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Returns the fraction of pixels with a channel further off than the tolerance and marks
+     * them red in the diff image.
+     */
+    private static double compare(BufferedImage expected, BufferedImage actual,
+                                  BufferedImage diff) {
+        if (expected.getWidth() != actual.getWidth()
+                || expected.getHeight() != actual.getHeight()) {
+            return 1;
+        }
+        int different = 0;
+        for (int y = 0; y < actual.getHeight(); ++y) {
+            for (int x = 0; x < actual.getWidth(); ++x) {
+                int a = expected.getRGB(x, y);
+                int b = actual.getRGB(x, y);
+                if (channelDistance(a, b) > CHANNEL_TOLERANCE) {
+                    ++different;
+                    diff.setRGB(x, y, 0xFF0000);
+                } else {
+                    diff.setRGB(x, y, (b >> 2) & 0x3F3F3F);
+                }
+            }
+        }
+        return (double) different / (actual.getWidth() * actual.getHeight());
+    }
+
+    private static int channelDistance(int a, int b) {
+        int distance = 0;
+        for (int shift = 0; shift < 32; shift += 8) {
+            distance = Math.max(distance, Math.abs(((a >> shift) & 0xFF) - ((b >> shift) & 0xFF)));
+        }
+        return distance;
+    }
+}